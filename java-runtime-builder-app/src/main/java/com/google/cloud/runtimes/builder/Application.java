@@ -18,6 +18,7 @@ package com.google.cloud.runtimes.builder;
 
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.config.domain.BetaSettings;
+import com.google.cloud.runtimes.builder.config.domain.ImageLockfile;
 import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
 import com.google.cloud.runtimes.builder.config.domain.OverrideableSetting;
 import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
@@ -52,7 +53,10 @@ public class Application {
   public static final String[] DEFAULT_JDK_MAPPINGS = {
       "*=gcr.io/google-appengine/openjdk:8",
       "openjdk8=gcr.io/google-appengine/openjdk:8",
-      "openjdk9=gcr.io/google-appengine/openjdk:9"
+      "openjdk9=gcr.io/google-appengine/openjdk:9",
+      "native=gcr.io/distroless/base-debian12",
+      "native-build=ghcr.io/graalvm/native-image-community:21",
+      "jlink=gcr.io/distroless/java-base-debian12"
   };
   public static final String[] DEFAULT_SERVER_MAPPINGS = {
       "*|*=gcr.io/google-appengine/jetty:9",
@@ -72,6 +76,9 @@ public class Application {
       "gcr.io/cloud-builders/mvn:3.5.0-jdk-8";
   public static final String DEFAULT_GRADLE_DOCKER_IMAGE =
       "gcr.io/cloud-builders/gradle:4.0-jdk-8";
+  public static final String DEFAULT_BUILDER_DOCKER_IMAGE =
+      "gcr.io/gcp-runtimes/java/runtime-builder";
+  public static final String DEFAULT_CACHE_MOUNT_SHARING = "shared";
   private static final Options CLI_OPTIONS = new Options();
   private static final String EXECUTABLE_NAME = "<BUILDER>";
 
@@ -95,6 +102,12 @@ public class Application {
         .desc("Mappings between supported jdk versions, server types, and docker images")
         .build());
 
+    options.addOption(Option.builder("l")
+        .hasArg()
+        .longOpt("image-lockfile")
+        .desc("Lockfile that pins the mapped docker images to digests")
+        .build());
+
     options.addOption(Option.builder("c")
         .hasArgs()
         .longOpt("compat-runtime-image")
@@ -113,6 +126,18 @@ public class Application {
         .desc("Docker image to use for gradle builds")
         .build());
 
+    options.addOption(Option.builder("b")
+        .hasArg(false)
+        .longOpt("cache-mounts")
+        .desc("Use BuildKit cache mounts for dependency caches in build stages")
+        .build());
+
+    options.addOption(Option.builder()
+        .hasArg()
+        .longOpt("cache-mount-sharing")
+        .desc("Sharing mode of BuildKit cache mounts: shared, private or locked")
+        .build());
+
     options.addOption(Option.builder("n")
         .hasArg(false)
         .longOpt("no-source-build")
@@ -134,13 +159,21 @@ public class Application {
     String mavenImage = cmd.getOptionValue("m");
     String gradleImage = cmd.getOptionValue("g");
     boolean disableSourceBuild = cmd.hasOption("n");
+    boolean enableCacheMounts = cmd.hasOption("b");
+    String cacheMountSharing = cmd.getOptionValue("cache-mount-sharing");
+    String lockfile = cmd.getOptionValue("l");
+    ImageLockfile imageLockfile = lockfile == null
+        ? ImageLockfile.empty() : ImageLockfile.load(Paths.get(lockfile));
 
     Injector injector = Guice.createInjector(
-        new RootModule(mergeSettingsWithDefaults(jdkMappings, serverMappings),
-            compatImage == null ? DEFAULT_COMPAT_RUNTIME_IMAGE : compatImage,
-            mavenImage == null ? DEFAULT_MAVEN_DOCKER_IMAGE : mavenImage,
-            gradleImage == null ? DEFAULT_GRADLE_DOCKER_IMAGE : gradleImage,
-            disableSourceBuild, getAppYamlOverrideSettings(cmd)));
+        new RootModule(mergeSettingsWithDefaults(jdkMappings, serverMappings, imageLockfile),
+            imageLockfile.pin(compatImage == null ? DEFAULT_COMPAT_RUNTIME_IMAGE : compatImage),
+            imageLockfile.pin(mavenImage == null ? DEFAULT_MAVEN_DOCKER_IMAGE : mavenImage),
+            imageLockfile.pin(gradleImage == null ? DEFAULT_GRADLE_DOCKER_IMAGE : gradleImage),
+            imageLockfile.pin(DEFAULT_BUILDER_DOCKER_IMAGE),
+            disableSourceBuild, enableCacheMounts,
+            cacheMountSharing == null ? DEFAULT_CACHE_MOUNT_SHARING : cacheMountSharing,
+            getAppYamlOverrideSettings(cmd)));
 
     // Perform dependency injection and run the application
     Path workspaceDir = Paths.get(System.getProperty("user.dir"));
@@ -178,6 +211,12 @@ public class Application {
             configMap.put(name, true);
           }
         },
+        name -> {
+          if (cmd.hasOption(name)) {
+            String value = cmd.getOptionValue(name);
+            configMap.put(name, value == null || parseBooleanSetting(name, value));
+          }
+        },
         name -> {
           String value = cmd.getOptionValue(name);
           if (value != null) {
@@ -188,6 +227,14 @@ public class Application {
     return configMap;
   }
 
+  private static boolean parseBooleanSetting(String name, String value) {
+    if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+      throw new IllegalArgumentException(String.format(
+          "Invalid value '%s' for --%s. Expected true or false.", value, name));
+    }
+    return Boolean.parseBoolean(value);
+  }
+
   /**
    * Adds options for override settings to app.yaml to command line options.
    *
@@ -204,6 +251,14 @@ public class Application {
               .hasArg(false)
               .build());
         },
+        nullableBooleanSettingName -> {
+          options.addOption(Option.builder().longOpt(nullableBooleanSettingName)
+              .desc(overrideSettingDescPrefix + " runtime_config : " + nullableBooleanSettingName)
+              .hasArg()
+              .optionalArg(true)
+              .argName("true|false")
+              .build());
+        },
         nonBooleanSettingName -> {
           options.addOption(Option.builder().longOpt(nonBooleanSettingName)
               .desc(overrideSettingDescPrefix + " runtime_config : " + nonBooleanSettingName)
@@ -219,6 +274,14 @@ public class Application {
               .hasArg(false)
               .build());
         },
+        nullableBooleanSettingName -> {
+          options.addOption(Option.builder().longOpt(nullableBooleanSettingName)
+              .desc(overrideSettingDescPrefix + " beta_settings : " + nullableBooleanSettingName)
+              .hasArg()
+              .optionalArg(true)
+              .argName("true|false")
+              .build());
+        },
         nonBooleanSettingName -> {
           options.addOption(Option.builder().longOpt(nonBooleanSettingName)
               .desc(overrideSettingDescPrefix + " beta_settings : " + nonBooleanSettingName)
@@ -229,11 +292,15 @@ public class Application {
   }
 
   private static void doForEachOverrideSetting(List<Field> configFields,
-      Consumer<String> actionBooleanSetting, Consumer<String> actionStringSetting) {
+      Consumer<String> actionBooleanSetting, Consumer<String> actionNullableBooleanSetting,
+      Consumer<String> actionStringSetting) {
     for (Field field : configFields) {
       String name = OverrideableSetting.getSettingName(field);
-      if ((field.getType().equals(boolean.class) || field.getType().equals(Boolean.class))) {
+      if (field.getType().equals(boolean.class)) {
         actionBooleanSetting.accept(name);
+      } else if (field.getType().equals(Boolean.class)) {
+        // null leaves the choice to the build profile, so an explicit false is meaningful
+        actionNullableBooleanSetting.accept(name);
       } else {
         actionStringSetting.accept(name);
       }
@@ -250,10 +317,25 @@ public class Application {
   @VisibleForTesting
   public static JdkServerLookup mergeSettingsWithDefaults(String[] rawJdkSettings,
       String[] rawServerSettings) {
+    return mergeSettingsWithDefaults(rawJdkSettings, rawServerSettings, ImageLockfile.empty());
+  }
+
+  /**
+   * Merges the given raw commandline settings with default settings for jdk and server images, and
+   * pins the images to the digests in the given lockfile.
+   *
+   * @param rawJdkSettings the raw commandling jdk mapping settings.
+   * @param rawServerSettings the raw commandline server mapping settings.
+   * @param imageLockfile the digests of the mapped images.
+   * @return the merged settings.
+   */
+  @VisibleForTesting
+  public static JdkServerLookup mergeSettingsWithDefaults(String[] rawJdkSettings,
+      String[] rawServerSettings, ImageLockfile imageLockfile) {
     String[] jdk = rawJdkSettings == null ? new String[0] : rawJdkSettings;
     String[] server = rawServerSettings == null ? new String[0] : rawServerSettings;
     return new JdkServerLookup(
         ObjectArrays.concat(jdk, DEFAULT_JDK_MAPPINGS, String.class),
-        ObjectArrays.concat(server, DEFAULT_SERVER_MAPPINGS, String.class));
+        ObjectArrays.concat(server, DEFAULT_SERVER_MAPPINGS, String.class), imageLockfile);
   }
 }
@@ -16,6 +16,8 @@
 
 package com.google.cloud.runtimes.builder;
 
+import com.google.cloud.runtimes.builder.buildcontext.BuildContextAnalyzer;
+import com.google.cloud.runtimes.builder.buildcontext.BuildContextSize;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepFactory;
@@ -75,6 +77,7 @@ public class BuildPipelineConfigurator {
     BuildContext buildContext = configureBuildContext(workspaceDir);
 
     List<BuildStep> steps = new ArrayList<>();
+    boolean nativeImage = buildContext.getRuntimeConfig().getNativeImage();
 
     if (buildContext.isSourceBuild()) {
       // build from source - add a compilation step
@@ -89,22 +92,76 @@ public class BuildPipelineConfigurator {
             .ifPresent(buildTool ->
                 steps.add(getBuildStepForTool(buildTool)));
       }
-      steps.add(buildStepFactory.createSourceBuildRuntimeImageStep());
+      if (!nativeImage) {
+        steps.add(buildStepFactory.createSourceBuildRuntimeImageStep());
+      }
 
-    } else {
+    } else if (!nativeImage) {
       // no compilation step is required
       steps.add(buildStepFactory.createPrebuiltRuntimeImageBuildStep());
     }
 
+    if (nativeImage) {
+      // compile the artifact into a native executable, which is deployed without a JVM
+      steps.add(buildStepFactory.createNativeImageBuildStep());
+      steps.add(buildStepFactory.createNativeRuntimeImageBuildStep());
+    }
+
+    // add build step for an optional class data sharing archive of the runtime image
+    steps.add(buildStepFactory.createAppCdsBuildStep());
+
     // add build step for optional jetty customizations
     steps.add(buildStepFactory.createJettyOptionsBuildStep());
 
+    // exclude everything the docker build doesn't use from its context
+    steps.add(buildStepFactory.createContextPruningBuildStep());
+
     // execute all build steps
     for (BuildStep step : steps) {
       step.run(buildContext);
     }
 
     buildContext.writeDockerResources();
+
+    // report the size of the build context, which docker build uploads before it starts
+    analyzeBuildContext(buildContext);
+  }
+
+  /*
+   * Measures the build context that the generated .dockerignore leaves, and fails if it exceeds
+   * runtime_config.build_context_budget.
+   */
+  private void analyzeBuildContext(BuildContext buildContext) throws BuildStepException {
+    String budgetSetting = buildContext.getRuntimeConfig().getBuildContextBudget();
+    Long budget = null;
+    if (!Strings.isNullOrEmpty(budgetSetting)) {
+      try {
+        budget = BuildContextAnalyzer.parseSize(budgetSetting);
+      } catch (IllegalArgumentException e) {
+        throw new BuildStepException("Invalid runtime_config.build_context_budget. "
+            + e.getMessage(), e);
+      }
+    }
+
+    BuildContextSize contextSize;
+    try {
+      contextSize = new BuildContextAnalyzer().analyze(buildContext.getWorkspaceDir());
+    } catch (IOException e) {
+      logger.warn("Unable to measure the docker build context, skipping its size report", e);
+      return;
+    }
+    logger.info("The docker build context holds {}", contextSize);
+
+    if (budget == null) {
+      return;
+    }
+    if (contextSize.getByteCount() > budget) {
+      throw new BuildStepException(String.format("The docker build context is %s, which exceeds "
+          + "runtime_config.build_context_budget of %s. Its largest directories are %s. Exclude "
+          + "the files that the build doesn't use in .dockerignore.",
+          BuildContextSize.formatBytes(contextSize.getByteCount()),
+          BuildContextSize.formatBytes(budget), contextSize.getLargestDirectories()));
+    }
   }
 
   private BuildContext configureBuildContext(Path workspaceDir) throws IOException {
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildcontext;
+
+import com.google.cloud.runtimes.builder.buildcontext.BuildContextSize.DirectorySize;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the build context that docker build sends to the docker daemon from a workspace, by
+ * walking the workspace and excluding what its .dockerignore excludes. Like docker, the walk
+ * doesn't descend into excluded directories unless a ! pattern names a path under them. Only the
+ * directories that are being walked and the largest directories found so far are kept in memory,
+ * so that large workspaces are measured in bounded memory.
+ */
+public class BuildContextAnalyzer {
+
+  private static final String DOCKERIGNORE_NAME = ".dockerignore";
+  // docker build sends these even if the .dockerignore excludes them
+  private static final List<String> BUILD_FILES = ImmutableList.of("!" + DOCKERIGNORE_NAME,
+      "!Dockerfile");
+  // directories deeper than this are counted in their parents, but not reported by themselves
+  private static final int MAX_REPORTED_DEPTH = 2;
+  private static final int MAX_REPORTED_DIRS = 5;
+  private static final Pattern SIZE_PATTERN
+      = Pattern.compile("^(\\d+)\\s*([kmgt]?)(i?b)?$", Pattern.CASE_INSENSITIVE);
+
+  /**
+   * Measures the build context of the given workspace, with the .dockerignore at its root.
+   *
+   * @throws IOException if the workspace can't be read
+   */
+  public BuildContextSize analyze(Path workspaceDir) throws IOException {
+    List<String> lines = new ArrayList<>();
+    Path dockerignore = workspaceDir.resolve(DOCKERIGNORE_NAME);
+    if (Files.isRegularFile(dockerignore)) {
+      lines.addAll(Files.readAllLines(dockerignore));
+    }
+    lines.addAll(BUILD_FILES);
+    DockerignoreMatcher matcher = new DockerignoreMatcher(lines);
+
+    Deque<DirectoryState> openDirectories = new ArrayDeque<>();
+    // the smallest of the largest directories is at the head, to be replaced by larger ones
+    PriorityQueue<DirectorySize> largestDirectories
+        = new PriorityQueue<>(Comparator.comparingLong(DirectorySize::getByteCount));
+    long[] totals = new long[2];
+
+    Files.walkFileTree(workspaceDir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        if (dir.equals(workspaceDir)) {
+          openDirectories.push(new DirectoryState("", new boolean[matcher.getRuleCount()]));
+          return FileVisitResult.CONTINUE;
+        }
+        String path = toContextPath(workspaceDir, dir);
+        boolean[] matches = matcher.match(path, openDirectories.peek().matches);
+        if (matcher.isExcludedBy(matches) && !matcher.mayIncludeUnder(path)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        openDirectories.push(new DirectoryState(path, matches));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        DirectoryState parent = openDirectories.peek();
+        boolean[] matches = matcher.match(toContextPath(workspaceDir, file), parent.matches);
+        if (!matcher.isExcludedBy(matches)) {
+          parent.fileCount++;
+          // links are sent as links, without the contents of their targets
+          parent.byteCount += attrs.isRegularFile() ? attrs.size() : 0;
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (exc != null) {
+          throw exc;
+        }
+        DirectoryState state = openDirectories.pop();
+        if (openDirectories.isEmpty()) {
+          totals[0] = state.fileCount;
+          totals[1] = state.byteCount;
+          return FileVisitResult.CONTINUE;
+        }
+        DirectoryState parent = openDirectories.peek();
+        parent.fileCount += state.fileCount;
+        parent.byteCount += state.byteCount;
+        if (openDirectories.size() <= MAX_REPORTED_DEPTH && state.byteCount > 0) {
+          largestDirectories.add(new DirectorySize(state.path, state.fileCount,
+              state.byteCount));
+          if (largestDirectories.size() > MAX_REPORTED_DIRS) {
+            largestDirectories.poll();
+          }
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+
+    List<DirectorySize> largest = new ArrayList<>(largestDirectories);
+    largest.sort(Comparator.comparingLong(DirectorySize::getByteCount).reversed()
+        .thenComparing(DirectorySize::getPath));
+    return new BuildContextSize(totals[0], totals[1], ImmutableList.copyOf(largest));
+  }
+
+  /**
+   * Parses a size, such as runtime_config.build_context_budget, given as a number of bytes that
+   * may be followed by a binary unit: K, M, G or T, optionally followed by B or iB.
+   *
+   * @throws IllegalArgumentException if the size can't be parsed
+   */
+  public static long parseSize(String size) {
+    Matcher matcher = SIZE_PATTERN.matcher(size.trim());
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException(String.format("Invalid size '%s'. Please use a number of "
+          + "bytes, optionally followed by K, M, G or T.", size));
+    }
+    String unit = matcher.group(2).toUpperCase(Locale.ROOT);
+    int exponent = unit.isEmpty() ? 0 : "KMGT".indexOf(unit) + 1;
+    try {
+      return Math.multiplyExact(Long.parseLong(matcher.group(1)), 1L << (10 * exponent));
+    } catch (ArithmeticException | NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Invalid size '%s'. It is too large.",
+          size), e);
+    }
+  }
+
+  private static String toContextPath(Path workspaceDir, Path path) {
+    return workspaceDir.relativize(path).toString().replace('\\', '/');
+  }
+
+  /*
+   * The totals of a directory that is being walked, and the patterns that match it or its
+   * parents.
+   */
+  private static class DirectoryState {
+
+    private final String path;
+    private final boolean[] matches;
+    private long fileCount;
+    private long byteCount;
+
+    private DirectoryState(String path, boolean[] matches) {
+      this.path = path;
+      this.matches = matches;
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildcontext;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The number of files and bytes that docker build sends as its build context, and the
+ * directories that contribute the most bytes to it.
+ */
+public class BuildContextSize {
+
+  private static final String[] UNITS = {"B", "KB", "MB", "GB", "TB"};
+
+  private final long fileCount;
+  private final long byteCount;
+  private final List<DirectorySize> largestDirectories;
+
+  BuildContextSize(long fileCount, long byteCount, List<DirectorySize> largestDirectories) {
+    this.fileCount = fileCount;
+    this.byteCount = byteCount;
+    this.largestDirectories = largestDirectories;
+  }
+
+  public long getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * Returns the total size of the contents of the files in the build context.
+   */
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * Returns the largest directories in the build context, largest first.
+   */
+  public List<DirectorySize> getLargestDirectories() {
+    return largestDirectories;
+  }
+
+  /**
+   * Formats a number of bytes with the largest binary unit that keeps it at or above one.
+   */
+  public static String formatBytes(long bytes) {
+    double value = bytes;
+    int unit = 0;
+    while (value >= 1024 && unit < UNITS.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return unit == 0 ? bytes + " B" : String.format(Locale.ROOT, "%.1f %s", value, UNITS[unit]);
+  }
+
+  @Override
+  public String toString() {
+    String summary = fileCount + " files, " + formatBytes(byteCount);
+    if (largestDirectories.isEmpty()) {
+      return summary;
+    }
+    return summary + ". Largest directories: " + largestDirectories.stream()
+        .map(DirectorySize::toString)
+        .collect(Collectors.joining(", "));
+  }
+
+  /**
+   * The files and bytes under a directory of the build context.
+   */
+  public static class DirectorySize {
+
+    private final String path;
+    private final long fileCount;
+    private final long byteCount;
+
+    DirectorySize(String path, long fileCount, long byteCount) {
+      this.path = path;
+      this.fileCount = fileCount;
+      this.byteCount = byteCount;
+    }
+
+    /**
+     * Returns the path of the directory, relative to the workspace.
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public long getFileCount() {
+      return fileCount;
+    }
+
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    @Override
+    public String toString() {
+      return path + " (" + formatBytes(byteCount) + ", " + fileCount + " files)";
+    }
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildcontext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches workspace-relative paths against the patterns of a .dockerignore file, with the same
+ * semantics as docker: a pattern excludes the paths that it matches and everything under them,
+ * patterns that start with ! include those paths again, and the last pattern that matches a path
+ * decides whether it's excluded. * matches within a path segment, and ** across any number of
+ * them.
+ */
+public class DockerignoreMatcher {
+
+  private final List<Rule> rules = new ArrayList<>();
+
+  /**
+   * Creates a matcher for the given lines of a .dockerignore file. Comments and blank lines are
+   * ignored.
+   */
+  public DockerignoreMatcher(List<String> lines) {
+    for (String line : lines) {
+      String pattern = line.trim();
+      if (pattern.isEmpty() || pattern.startsWith("#")) {
+        continue;
+      }
+      boolean exception = pattern.startsWith("!");
+      if (exception) {
+        pattern = pattern.substring(1).trim();
+      }
+      pattern = clean(pattern);
+      if (!pattern.isEmpty()) {
+        rules.add(new Rule(pattern, exception));
+      }
+    }
+  }
+
+  /**
+   * Returns true if the file or directory at the given workspace-relative path is excluded from
+   * the build context.
+   */
+  public boolean isExcluded(String path) {
+    boolean[] matches = new boolean[rules.size()];
+    String[] segments = path.split("/");
+    StringBuilder parent = new StringBuilder();
+    for (String segment : segments) {
+      if (parent.length() > 0) {
+        parent.append('/');
+      }
+      parent.append(segment);
+      matches = match(parent.toString(), matches);
+    }
+    return isExcludedBy(matches);
+  }
+
+  /**
+   * Returns, for each pattern, whether it matches the given path or one of its parents, from
+   * whether it matches one of its parents.
+   */
+  boolean[] match(String path, boolean[] parentMatches) {
+    boolean[] matches = new boolean[rules.size()];
+    for (int i = 0; i < rules.size(); i++) {
+      matches[i] = parentMatches[i] || rules.get(i).regex.matcher(path).matches();
+    }
+    return matches;
+  }
+
+  /**
+   * Returns true if the last of the given pattern matches excludes the path that they're for.
+   */
+  boolean isExcludedBy(boolean[] matches) {
+    for (int i = rules.size() - 1; i >= 0; i--) {
+      if (matches[i]) {
+        return !rules.get(i).exception;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if a pattern that starts with ! may include files again from under the given
+   * excluded directory. Like docker, only patterns that name the directory are considered, and the
+   * contents of other excluded directories aren't walked.
+   */
+  public boolean mayIncludeUnder(String dir) {
+    return rules.stream()
+        .anyMatch(rule -> rule.exception && (rule.pattern + "/").startsWith(dir + "/"));
+  }
+
+  int getRuleCount() {
+    return rules.size();
+  }
+
+  /*
+   * Cleans a pattern the way that docker does: redundant separators and . segments are removed,
+   * .. segments are resolved, and a leading separator is dropped.
+   */
+  private static String clean(String pattern) {
+    Deque<String> segments = new ArrayDeque<>();
+    for (String segment : pattern.split("/")) {
+      if (segment.isEmpty() || segment.equals(".")) {
+        continue;
+      }
+      if (segment.equals("..")) {
+        segments.pollLast();
+      } else {
+        segments.addLast(segment);
+      }
+    }
+    return String.join("/", segments);
+  }
+
+  /*
+   * Translates a pattern into a regular expression that matches whole paths.
+   */
+  private static Pattern compile(String pattern) {
+    StringBuilder regex = new StringBuilder("^");
+    int length = pattern.length();
+    for (int i = 0; i < length; i++) {
+      char ch = pattern.charAt(i);
+      if (ch == '*') {
+        if (i + 1 < length && pattern.charAt(i + 1) == '*') {
+          i++;
+          // **/ matches any number of directories, including none
+          if (i + 1 < length && pattern.charAt(i + 1) == '/') {
+            i++;
+          }
+          regex.append(i + 1 == length ? ".*" : "(.*/)?");
+        } else {
+          regex.append("[^/]*");
+        }
+      } else if (ch == '?') {
+        regex.append("[^/]");
+      } else if (ch == '\\' && i + 1 < length) {
+        i++;
+        regex.append(Pattern.quote(String.valueOf(pattern.charAt(i))));
+      } else if (ch == '[' && pattern.indexOf(']', i + 1) > i + 1) {
+        int end = pattern.indexOf(']', i + 1);
+        String characters = pattern.substring(i + 1, end);
+        if (characters.startsWith("!")) {
+          characters = "^" + characters.substring(1);
+        }
+        regex.append('[').append(characters.replace("[", "\\[")).append(']');
+        i = end;
+      } else {
+        regex.append(Pattern.quote(String.valueOf(ch)));
+      }
+    }
+    return Pattern.compile(regex.append('$').toString());
+  }
+
+  private static class Rule {
+
+    private final String pattern;
+    private final Pattern regex;
+    private final boolean exception;
+
+    private Rule(String pattern, boolean exception) {
+      this.pattern = pattern;
+      this.regex = compile(pattern);
+      this.exception = exception;
+    }
+  }
+
+}
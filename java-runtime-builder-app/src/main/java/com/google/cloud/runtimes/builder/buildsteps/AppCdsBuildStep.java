@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.JAR;
+
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.Artifact;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
+import com.google.cloud.runtimes.builder.dockerfile.Stage;
+import com.google.common.annotations.VisibleForTesting;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Build step that starts the application inside the runtime image for a short training run, and
+ * saves the classes it loads into an archive that the JVM maps into memory when the container
+ * starts, instead of loading and verifying them again. JDK 11 and later archive the application's
+ * classes with AppCDS, and JDK 25 and later write an ahead-of-time cache instead. Only applies to
+ * JAR artifacts, if runtime_config.app_cds is set.
+ */
+public class AppCdsBuildStep implements BuildStep {
+
+  private final Logger logger = LoggerFactory.getLogger(AppCdsBuildStep.class);
+
+  @VisibleForTesting
+  static final int TRAINING_SECONDS = 30;
+
+  private static final int MIN_APP_CDS_VERSION = 11;
+  private static final int MIN_ARCHIVE_AT_EXIT_VERSION = 13;
+  private static final int MIN_AOT_CACHE_VERSION = 25;
+
+  private static final String CLASS_LIST = "/app/app.classlist";
+  private static final String SHARED_ARCHIVE = "/app/app.jsa";
+  private static final String AOT_CACHE = "/app/app.aot";
+
+  @Override
+  public void run(BuildContext buildContext) throws BuildStepException {
+    if (!buildContext.getRuntimeConfig().getAppCds()) {
+      return;
+    }
+    if (buildContext.getRuntimeConfig().getNativeImage()) {
+      logger.info("A native executable doesn't run on a JVM. Skipping the AppCDS training run.");
+      return;
+    }
+    if (buildContext.getRuntimeConfig().getJlink()) {
+      logger.info("Class data sharing is not available for JREs built by jlink. Skipping the "
+          + "AppCDS training run.");
+      return;
+    }
+
+    Optional<Artifact> artifact = buildContext.getDeployedArtifact();
+    if (!artifact.isPresent() || artifact.get().getType() != JAR) {
+      logger.info("Class data sharing is only available for JAR artifacts. Skipping the AppCDS "
+          + "training run.");
+      return;
+    }
+    if (!buildContext.isSourceBuild() && isBootLayered(artifact.get())) {
+      // the layers are launched from a directory on the class path, which can't be archived
+      logger.info("Class data sharing is not available for Spring Boot layered JARs. Skipping the "
+          + "AppCDS training run.");
+      return;
+    }
+
+    Optional<Integer> javaVersion = buildContext.getRuntimeImage()
+        .flatMap(image -> JdkServerLookup.getJavaVersion(image,
+            buildContext.getRuntimeConfig().getJdk()));
+    if (!javaVersion.isPresent() || javaVersion.get() < MIN_APP_CDS_VERSION) {
+      logger.info("Class data sharing requires JDK {} or later, but the runtime image {} uses JDK "
+          + "{}. Skipping the AppCDS training run.", MIN_APP_CDS_VERSION,
+          buildContext.getRuntimeImage().orElse(null), javaVersion.map(String::valueOf)
+              .orElse("of an unknown version"));
+      return;
+    }
+
+    Stage stage = buildContext.getDockerfile().getLastStage();
+    // keeps the options that the runtime image step has already set
+    String jvmOptions = RuntimeImageBuildStep.JVM_OPTIONS_VARIABLE + "=\"$"
+        + RuntimeImageBuildStep.JVM_OPTIONS_VARIABLE + " ";
+    String trainingRun = "timeout -s TERM " + TRAINING_SECONDS + " java ";
+    // the application is stopped at the end of the training run, or may fail to start without the
+    // services it connects to, so the archive is written however it exits
+    if (javaVersion.get() >= MIN_AOT_CACHE_VERSION) {
+      stage.add("RUN", trainingRun + "-XX:AOTCacheOutput=" + AOT_CACHE
+          + " -jar $APP_DESTINATION || true");
+      stage.add("ENV", jvmOptions + "-XX:AOTCache=" + AOT_CACHE + "\"");
+    } else if (javaVersion.get() >= MIN_ARCHIVE_AT_EXIT_VERSION) {
+      stage.add("RUN", trainingRun + "-XX:ArchiveClassesAtExit=" + SHARED_ARCHIVE
+          + " -jar $APP_DESTINATION || true");
+      stage.add("ENV", jvmOptions + "-XX:SharedArchiveFile=" + SHARED_ARCHIVE + "\"");
+    } else {
+      stage.add("RUN", "(" + trainingRun + "-Xshare:off -XX:DumpLoadedClassList="
+          + CLASS_LIST + " -jar $APP_DESTINATION || true)"
+          + " && java -Xshare:dump -XX:SharedClassListFile=" + CLASS_LIST
+          + " -XX:SharedArchiveFile=" + SHARED_ARCHIVE + " -cp $APP_DESTINATION"
+          + " && rm " + CLASS_LIST);
+      stage.add("ENV", jvmOptions + "-XX:SharedArchiveFile=" + SHARED_ARCHIVE + "\"");
+    }
+  }
+
+  private boolean isBootLayered(Artifact artifact) {
+    try {
+      return !artifact.getBootLayers().isEmpty() && artifact.getMainClass().isPresent();
+    } catch (IOException e) {
+      // the runtime image step deploys a JAR it can't read as a single layer
+      return false;
+    }
+  }
+
+}
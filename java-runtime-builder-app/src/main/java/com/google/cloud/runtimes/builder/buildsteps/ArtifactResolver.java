@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.COMPAT_EXPLODED_WAR;
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.EXPLODED_WAR;
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.JAR;
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.WAR;
+
+import com.google.cloud.runtimes.builder.buildcontext.DockerignoreMatcher;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.ArchiveSummary;
+import com.google.cloud.runtimes.builder.config.domain.Artifact;
+import com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType;
+import com.google.cloud.runtimes.builder.config.domain.ArtifactDiscovery;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
+import com.google.cloud.runtimes.builder.exception.ArtifactNotFoundException;
+import com.google.cloud.runtimes.builder.exception.TooManyArtifactsException;
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the artifact that a build deploys, and reads the summary of a prebuilt archive, for the
+ * build steps that build an image from the artifact.
+ */
+public class ArtifactResolver {
+
+  private final Logger logger = LoggerFactory.getLogger(ArtifactResolver.class);
+
+  @Inject
+  ArtifactResolver() {
+  }
+
+  /**
+   * Returns the artifact of the build, whether it's built from source or prebuilt.
+   */
+  public Artifact getArtifact(BuildContext buildContext) throws BuildStepException {
+    return buildContext.isSourceBuild()
+        ? getBuiltArtifact(buildContext) : getPrebuiltArtifact(buildContext);
+  }
+
+  /**
+   * Returns the artifact that a build from source produces, which must be set with
+   * runtime_config.artifact.
+   */
+  public Artifact getBuiltArtifact(BuildContext buildContext) {
+    String providedArtifactPath = buildContext.getRuntimeConfig().getArtifact();
+
+    // Require that the artifact name is explicitly provided by the user.
+    if (providedArtifactPath == null) {
+      throw new IllegalStateException("Unable to determine the artifact path. In order to build "
+          + "from source, the path to the artifact must be specified in the runtime_config.artifact"
+          + " field.");
+    }
+    return Artifact.fromPath(buildContext.getWorkspaceDir().resolve(providedArtifactPath),
+        buildContext.getWorkspaceIndex());
+  }
+
+  /**
+   * Returns the prebuilt artifact in the workspace, which is either set with
+   * runtime_config.artifact, the workspace itself, the only artifact at its root, or the artifact
+   * found in the output directories of its projects.
+   */
+  public Artifact getPrebuiltArtifact(BuildContext buildContext) throws BuildStepException {
+    WorkspaceIndex workspaceIndex = buildContext.getWorkspaceIndex();
+    String providedArtifactPath = buildContext.getRuntimeConfig().getArtifact();
+    if (providedArtifactPath != null) {
+      // if the artifact path is set in runtime configuration, use that value
+      return Artifact.fromPath(buildContext.getWorkspaceDir().resolve(providedArtifactPath),
+          workspaceIndex);
+    }
+
+    // Check if the workspace itself is an exploded war artifact
+    if (Artifact.isAnArtifact(buildContext.getWorkspaceDir(), workspaceIndex)) {
+      Artifact rootArtifact = Artifact.fromPath(buildContext.getWorkspaceDir(), workspaceIndex);
+      ArtifactType artifactType = rootArtifact.getType();
+      if (artifactType == EXPLODED_WAR || artifactType == COMPAT_EXPLODED_WAR) {
+        return rootArtifact;
+      }
+    }
+
+    // Potential artifacts include all files (not including directories) at the workspace root.
+    List<Path> artifacts = workspaceIndex.getRootFiles().stream()
+        // filter out non-artifacts
+        .filter((path) -> Artifact.isAnArtifact(path, workspaceIndex))
+        .collect(Collectors.toList());
+
+    if (artifacts.size() < 1) {
+      return discoverArtifact(buildContext);
+    } else if (artifacts.size() > 1) {
+      throw new TooManyArtifactsException(artifacts);
+    } else {
+      return Artifact.fromPath(artifacts.get(0));
+    }
+  }
+
+  /*
+   * Looks for the artifact of a build that ran before the workspace was uploaded, in the output
+   * directories of its projects. Artifacts that the .dockerignore excludes aren't considered, as
+   * they can't be copied into the image.
+   */
+  private Artifact discoverArtifact(BuildContext buildContext) throws BuildStepException {
+    DockerignoreMatcher dockerignore;
+    try {
+      dockerignore = new DockerignoreMatcher(buildContext.getExistingDockerignoreLines());
+    } catch (IOException e) {
+      throw new BuildStepException(e);
+    }
+    List<Path> artifacts = ArtifactDiscovery.discover(buildContext.getWorkspaceIndex(),
+        dockerignore);
+    if (artifacts.isEmpty()) {
+      throw new ArtifactNotFoundException();
+    }
+    List<Path> topRanked = ArtifactDiscovery.getTopRanked(buildContext.getWorkspaceDir(),
+        artifacts);
+    if (topRanked.size() > 1) {
+      throw new TooManyArtifactsException(topRanked);
+    }
+    if (artifacts.size() > 1) {
+      logger.info("Found artifacts {} in the output directories of the workspace. Deploying {}. "
+          + "Set runtime_config.artifact to deploy another one.", artifacts, artifacts.get(0));
+    }
+    return Artifact.fromPath(artifacts.get(0));
+  }
+
+  /**
+   * Reads the summary of a prebuilt JAR or WAR, so that a truncated or corrupt archive fails the
+   * build here, rather than when it's copied, unpacked or run in the image. Returns empty for
+   * other artifacts.
+   */
+  public Optional<ArchiveSummary> readArchive(Artifact artifact) throws BuildStepException {
+    ArtifactType artifactType = artifact.getType();
+    if ((artifactType != JAR && artifactType != WAR) || !Files.isRegularFile(artifact.getPath())) {
+      return Optional.empty();
+    }
+    ArchiveSummary archiveSummary;
+    try {
+      archiveSummary = artifact.getArchiveSummary();
+    } catch (IOException e) {
+      throw new BuildStepException(String.format("The artifact %s is not a valid %s archive: %s",
+          artifact.getPath(), artifactType, e.getMessage()), e);
+    }
+    logger.info("Read {} archive {}: Main-Class {}, Spring Boot layers {}, class file version {}",
+        artifactType, artifact.getPath(), archiveSummary.getMainClass().orElse("none"),
+        archiveSummary.getBootLayers(),
+        archiveSummary.getClassFileVersion().map(String::valueOf).orElse("unknown"));
+    return Optional.of(archiveSummary);
+  }
+
+}
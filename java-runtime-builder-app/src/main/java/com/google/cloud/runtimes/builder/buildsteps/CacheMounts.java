@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import com.google.cloud.runtimes.builder.dockerfile.Dockerfile;
+import com.google.cloud.runtimes.builder.dockerfile.Instruction;
+import com.google.cloud.runtimes.builder.injection.CacheMountSharing;
+import com.google.cloud.runtimes.builder.injection.EnableCacheMounts;
+import com.google.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates BuildKit cache mounts for the RUN instructions of build stages. Cache mounts keep
+ * dependency caches on the docker host, so they survive across builds even when the layer cache
+ * misses.
+ */
+public class CacheMounts {
+
+  // cache mounts require the BuildKit dockerfile frontend
+  static final String SYNTAX_DIRECTIVE = "# syntax=docker/dockerfile:1";
+
+  // maven's local repository, which also holds the distributions downloaded by mvnw
+  static final String MAVEN_CACHE_DIR = "/root/.m2";
+  // gradle's user home, which also holds the distributions downloaded by gradlew
+  static final String GRADLE_CACHE_DIR = "/root/.gradle";
+
+  private final boolean enabled;
+  private final String sharing;
+
+  @Inject
+  CacheMounts(@EnableCacheMounts boolean enabled, @CacheMountSharing String sharing) {
+    this.enabled = enabled;
+    this.sharing = sharing;
+  }
+
+  /**
+   * Adds the parser directive that enables cache mounts to the Dockerfile, if they are enabled.
+   */
+  public void addSyntaxDirective(Dockerfile dockerfile) {
+    if (enabled) {
+      dockerfile.addDirective(SYNTAX_DIRECTIVE);
+    }
+  }
+
+  /**
+   * Returns a RUN instruction for the given command which, if cache mounts are enabled, mounts a
+   * cache at each of the given directories.
+   */
+  public Instruction run(String command, String... cacheDirs) {
+    List<String> flags = new ArrayList<>();
+    if (enabled) {
+      for (String cacheDir : cacheDirs) {
+        flags.add("--mount=type=cache,target=" + cacheDir + ",sharing=" + sharing);
+      }
+    }
+    return Instruction.run(flags, command);
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.Artifact;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.BuildTool;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
+import com.google.cloud.runtimes.builder.util.StringLineAppender;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Build step that, if runtime_config.prune_build_context is set, adds .dockerignore rules for the
+ * parts of the workspace that neither the build stage nor the runtime image use, so that they
+ * aren't sent to the docker daemon as part of the build context. The rules are derived from the
+ * selected build tool and the projects it builds, and only cover paths that exist. If
+ * runtime_config.dockerignore_allowlist is set, a prebuilt deployment excludes everything but its
+ * artifact and the libraries on its Class-Path instead.
+ */
+public class ContextPruningBuildStep implements BuildStep {
+
+  private final Logger logger = LoggerFactory.getLogger(ContextPruningBuildStep.class);
+
+  // version control metadata, which source builds may read, for example to stamp the commit
+  // into the artifact, so it's only pruned from prebuilt deployments
+  private static final List<String> VCS_METADATA_PATHS = ImmutableList.of(".git", ".svn", ".hg");
+
+  // IDE settings, which no build reads
+  private static final List<String> IDE_METADATA_PATHS = ImmutableList.of(".idea", ".vscode",
+      ".settings", ".project", ".classpath");
+  private static final List<String> IDE_METADATA_PATTERNS = ImmutableList.of("**/*.iml",
+      "**/.DS_Store");
+
+  // directories besides its output directory that each build tool regenerates in a project: the
+  // project cache of gradle, and the node_modules that frontend plugins install
+  private static final Map<BuildTool, List<String>> REGENERATED_DIRS = ImmutableMap.of(
+      BuildTool.MAVEN, ImmutableList.of("node_modules"),
+      BuildTool.GRADLE, ImmutableList.of(".gradle", "node_modules"));
+
+  @Override
+  public void run(BuildContext buildContext) throws BuildStepException {
+    boolean sourceBuild = buildContext.isSourceBuild();
+    Optional<Path> artifactPath = buildContext.getDeployedArtifact()
+        .map(artifact -> buildContext.getWorkspaceDir().relativize(artifact.getPath()));
+    boolean workspaceIsArtifact = !sourceBuild && artifactPath.isPresent()
+        && artifactPath.get().toString().isEmpty();
+
+    // a prebuilt deployment only needs its artifact in the build context
+    if (buildContext.getRuntimeConfig().getDockerignoreAllowlist() && !sourceBuild
+        && artifactPath.isPresent() && !workspaceIsArtifact) {
+      addAllowlist(buildContext, getDeployedPaths(buildContext));
+      return;
+    }
+
+    if (!Boolean.TRUE.equals(buildContext.getRuntimeConfig().getPruneBuildContext())) {
+      return;
+    }
+
+    WorkspaceIndex workspaceIndex = buildContext.getWorkspaceIndex();
+    List<String> rules = new ArrayList<>();
+    if (!sourceBuild) {
+      VCS_METADATA_PATHS.stream().filter(workspaceIndex::exists).forEach(rules::add);
+    }
+    IDE_METADATA_PATHS.stream().filter(workspaceIndex::exists).forEach(rules::add);
+    rules.addAll(IDE_METADATA_PATTERNS);
+
+    // The inputs of a custom build script are unknown, and all of an exploded WAR at the root of
+    // the workspace is deployed, so only metadata is pruned from those. Otherwise the build stage
+    // regenerates the outputs of the build tool, and a prebuilt deployment only needs its
+    // artifact.
+    boolean customBuildScript = sourceBuild
+        && !Strings.isNullOrEmpty(buildContext.getRuntimeConfig().getBuildScript());
+    if (!customBuildScript && !workspaceIsArtifact) {
+      rules.addAll(getRegeneratedDirs(buildContext));
+    }
+
+    // don't shadow files that the user has explicitly re-included in an existing .dockerignore
+    List<String> userExceptions = getExistingRules(buildContext).stream()
+        .filter(line -> line.startsWith("!"))
+        .map(line -> stripSlashes(line.substring(1)))
+        .collect(Collectors.toList());
+
+    StringLineAppender dockerignore = buildContext.getDockerignore();
+    for (String rule : rules) {
+      if (userExceptions.stream().anyMatch(exception -> exception.startsWith(rule))) {
+        logger.info("Not adding .dockerignore rule {}, which would exclude files that the "
+            + "existing .dockerignore includes.", rule);
+        continue;
+      }
+      dockerignore.appendLine(rule);
+    }
+
+    // a prebuilt artifact is copied from the build context, and may be inside an output directory
+    if (!sourceBuild && artifactPath.isPresent() && !workspaceIsArtifact) {
+      for (Path deployedPath : getDeployedPaths(buildContext)) {
+        dockerignore.appendLine("!" + deployedPath);
+      }
+    }
+  }
+
+  /*
+   * Excludes everything but the artifact. The rules of an existing .dockerignore that exclude files
+   * are repeated afterwards, so that they still apply within the artifact, but its exceptions are
+   * not, as they would add files back from outside of it.
+   */
+  private void addAllowlist(BuildContext buildContext, List<Path> deployedPaths)
+      throws BuildStepException {
+    StringLineAppender dockerignore = buildContext.getDockerignore();
+    dockerignore.appendLine("*");
+    for (Path deployedPath : deployedPaths) {
+      dockerignore.appendLine("!" + deployedPath);
+    }
+    for (String rule : getExistingRules(buildContext)) {
+      if (!rule.startsWith("!")) {
+        dockerignore.appendLine(rule);
+      }
+    }
+  }
+
+  /*
+   * Returns the workspace-relative paths that a prebuilt deployment copies from the build context:
+   * its artifact and the libraries on the artifact's Class-Path.
+   */
+  private List<Path> getDeployedPaths(BuildContext buildContext) throws BuildStepException {
+    Artifact artifact = buildContext.getDeployedArtifact().get();
+    List<Path> deployedPaths = new ArrayList<>();
+    try {
+      for (Path library : artifact.getClassPathLibraries()) {
+        deployedPaths.add(buildContext.getWorkspaceDir().relativize(library));
+      }
+    } catch (IOException e) {
+      // the runtime image step only adds the artifact itself in this case
+      logger.debug("Unable to read the manifest of {}", artifact.getPath(), e);
+    }
+    deployedPaths.add(buildContext.getWorkspaceDir().relativize(artifact.getPath()));
+    return deployedPaths;
+  }
+
+  /*
+   * Returns the rules of the .dockerignore that already exists in the workspace, without comments
+   * and blank lines.
+   */
+  private List<String> getExistingRules(BuildContext buildContext) throws BuildStepException {
+    try {
+      return buildContext.getExistingDockerignoreLines().stream()
+          .map(String::trim)
+          .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new BuildStepException(e);
+    }
+  }
+
+  /*
+   * Returns the directories that the selected build tool regenerates in each of the projects it
+   * builds, such as their output directories, that exist in the workspace.
+   */
+  private List<String> getRegeneratedDirs(BuildContext buildContext) {
+    WorkspaceIndex workspaceIndex = buildContext.getWorkspaceIndex();
+    Set<Path> projectDirs = new LinkedHashSet<>();
+    Optional<BuildTool> buildTool = buildContext.getBuildTool();
+    if (!buildTool.isPresent()) {
+      return Collections.emptyList();
+    }
+    // the root project may be declared by a gradle settings file alone
+    projectDirs.add(Paths.get(""));
+    for (Path buildFile : buildContext.findBuildFiles(buildTool.get())) {
+      if (buildFile.getParent() != null) {
+        projectDirs.add(buildFile.getParent());
+      }
+    }
+
+    List<String> dirNames = new ArrayList<>();
+    dirNames.add(buildTool.get().getOutputDirName());
+    dirNames.addAll(REGENERATED_DIRS.get(buildTool.get()));
+    List<String> regeneratedDirs = new ArrayList<>();
+    for (Path projectDir : projectDirs) {
+      for (String dirName : dirNames) {
+        Path dir = projectDir.resolve(dirName);
+        if (workspaceIndex.isDirectory(dir)) {
+          regeneratedDirs.add(dir.toString());
+        }
+      }
+    }
+    return regeneratedDirs;
+  }
+
+  private static String stripSlashes(String pattern) {
+    return pattern.replaceAll("^/+", "");
+  }
+}
@@ -20,16 +20,31 @@ import com.google.cloud.runtimes.builder.Constants;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.BuildProfile;
+import com.google.cloud.runtimes.builder.config.domain.BuildTool;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
+import com.google.cloud.runtimes.builder.dockerfile.Instruction;
+import com.google.cloud.runtimes.builder.dockerfile.Stage;
 import com.google.cloud.runtimes.builder.injection.GradleDockerImage;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Build step that invokes gradle.
@@ -38,27 +53,214 @@ public class GradleBuildStep implements BuildStep {
 
   private final Logger logger = LoggerFactory.getLogger(GradleBuildStep.class);
 
+  // builds all of the project's archives without running tests or other verification tasks
+  private static final String DEFAULT_GRADLE_TASK = "assemble";
+
+  // files outside of the projects' build.gradle files that can affect dependency resolution
+  private static final List<String> DEPENDENCY_INPUT_PATHS = ImmutableList.of("gradlew",
+      "gradle/wrapper", "settings.gradle", "gradle.properties", "buildSrc");
+
+  // init script that adds a task to each project which downloads everything it depends on
+  private static final String RESOLVE_DEPENDENCIES_TASK = "resolveDependencies";
+  private static final String RESOLVE_DEPENDENCIES_SCRIPT = "/tmp/resolve-dependencies.gradle";
+  private static final String RESOLVE_DEPENDENCIES_SCRIPT_CONTENTS = "allprojects { task "
+      + RESOLVE_DEPENDENCIES_TASK + " { doLast { configurations.findAll { it.canBeResolved }"
+      + ".each { it.resolve() } } } }";
+
+  // a one-shot container gains nothing from a daemon, and gradle sizes its worker pool by the
+  // cores of the host rather than those available to the container
+  private static final String PERFORMANCE_GRADLE_ARGS = "--no-daemon --max-workers=$(nproc)";
+
+  // the configuration cache is only available from gradle 6.6 onwards
+  private static final int CONFIGURATION_CACHE_MIN_MAJOR_VERSION = 6;
+  private static final int CONFIGURATION_CACHE_MIN_MINOR_VERSION = 6;
+  private static final String WRAPPER_PROPERTIES_PATH = "gradle/wrapper/gradle-wrapper.properties";
+  private static final Pattern WRAPPER_VERSION_PATTERN
+      = Pattern.compile("gradle-(\\d+)\\.(\\d+)[^/]*\\.zip$");
+
+  // matches each include statement in settings.gradle, including those that span several lines
+  private static final Pattern INCLUDE_PATTERN = Pattern.compile(
+      "^\\s*include\\b\\s*\\(?\\s*((?:['\"][^'\"]*['\"]\\s*,\\s*)*['\"][^'\"]*['\"])",
+      Pattern.MULTILINE);
+  private static final Pattern QUOTED_STRING_PATTERN = Pattern.compile("['\"]([^'\"]*)['\"]");
+
   private final String gradleImage;
+  private final CacheMounts cacheMounts;
 
   @Inject
-  GradleBuildStep(@GradleDockerImage String gradleImage) {
+  GradleBuildStep(@GradleDockerImage String gradleImage, CacheMounts cacheMounts) {
     this.gradleImage = gradleImage;
+    this.cacheMounts = cacheMounts;
   }
 
   @Override
   public void run(BuildContext buildContext) throws BuildStepException {
-    buildContext.getDockerfile()
-        .appendLine("FROM " + gradleImage + " as " + Constants.DOCKERFILE_BUILD_STAGE)
-        .appendLine("ADD . .")
-        .appendLine("RUN " + getGradleExecutable(buildContext) + " build")
-        .appendLine();
+    RuntimeConfig runtimeConfig = buildContext.getRuntimeConfig();
+    BuildProfile buildProfile;
+    try {
+      buildProfile = BuildProfile.fromSetting(runtimeConfig.getBuildProfile());
+    } catch (IllegalArgumentException e) {
+      throw new BuildStepException(e.getMessage(), e);
+    }
+    boolean performance = buildProfile == BuildProfile.PERFORMANCE;
+
+    String gradleCommand = getGradleExecutable(buildContext);
+    if (performance) {
+      gradleCommand += " " + PERFORMANCE_GRADLE_ARGS;
+    }
+    if (isEnabled(runtimeConfig.getGradleParallel(), performance)) {
+      gradleCommand += " --parallel";
+    }
+
+    // neither cache applies to the dependency layer, whose init script resolves configurations
+    // while the task graph executes
+    String buildCommand = gradleCommand;
+    Optional<String> artifactProject = findArtifactProject(buildContext);
+    if (artifactProject.isPresent()) {
+      logger.info("Artifact belongs to project {}. Building only that project and the projects it "
+          + "depends on.", artifactProject.get());
+      buildCommand += " --configure-on-demand";
+    }
+    if (isEnabled(runtimeConfig.getGradleBuildCache(), performance)) {
+      buildCommand += " --build-cache";
+    }
+    if (isEnabled(runtimeConfig.getGradleConfigurationCache(),
+        performance && wrapperSupportsConfigurationCache(buildContext))) {
+      buildCommand += " --configuration-cache";
+    }
+
+    cacheMounts.addSyntaxDirective(buildContext.getDockerfile());
+    Stage stage = buildContext.getDockerfile()
+        .addStage(gradleImage, Constants.DOCKERFILE_BUILD_STAGE);
+
+    if (runtimeConfig.getCacheDependencies()) {
+      addDependencyLayer(buildContext, stage, gradleCommand);
+    }
+
+    stage.add("ADD", ". .")
+        .add(cacheMounts.run(buildCommand + " " + getGradleTask(buildContext, artifactProject),
+            CacheMounts.GRADLE_CACHE_DIR));
 
     buildContext.setBuildArtifactLocation(Optional.of(Paths.get("build/libs")));
   }
 
+  /*
+   * Adds only the wrapper and the files that configure the build, and downloads the wrapper
+   * distribution and all dependencies in a separate layer. This layer stays cached until one of
+   * those files changes.
+   */
+  private void addDependencyLayer(BuildContext buildContext, Stage stage, String gradleCommand) {
+    WorkspaceIndex workspaceIndex = buildContext.getWorkspaceIndex();
+    for (String inputPath : DEPENDENCY_INPUT_PATHS) {
+      if (workspaceIndex.exists(inputPath)) {
+        stage.add(Instruction.copy(inputPath, inputPath).asDependencies());
+      }
+    }
+
+    for (Path buildFile : buildContext.findBuildFiles(BuildTool.GRADLE)) {
+      stage.add(Instruction.copy(buildFile.toString(), buildFile.toString()).asDependencies());
+    }
+
+    stage.add(cacheMounts.run("echo '" + RESOLVE_DEPENDENCIES_SCRIPT_CONTENTS + "' > "
+        + RESOLVE_DEPENDENCIES_SCRIPT + " && " + gradleCommand + " --init-script "
+        + RESOLVE_DEPENDENCIES_SCRIPT + " " + RESOLVE_DEPENDENCIES_TASK,
+        CacheMounts.GRADLE_CACHE_DIR).asDependencies());
+  }
+
+  private static boolean isEnabled(Boolean setting, boolean profileDefault) {
+    return setting == null ? profileDefault : setting;
+  }
+
+  /*
+   * Returns true if the project's wrapper distribution is recent enough for the configuration
+   * cache. The version of the system gradle is unknown, so it's never assumed to be.
+   */
+  private boolean wrapperSupportsConfigurationCache(BuildContext buildContext)
+      throws BuildStepException {
+    Path propertiesPath = buildContext.getWorkspaceDir().resolve(WRAPPER_PROPERTIES_PATH);
+    WorkspaceIndex workspaceIndex = buildContext.getWorkspaceIndex();
+    if (!workspaceIndex.exists("gradlew") || !workspaceIndex.isFile(propertiesPath)) {
+      return false;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(propertiesPath)) {
+      properties.load(in);
+    } catch (IOException e) {
+      throw new BuildStepException(e);
+    }
+    Matcher matcher
+        = WRAPPER_VERSION_PATTERN.matcher(properties.getProperty("distributionUrl", ""));
+    if (!matcher.find()) {
+      return false;
+    }
+    int major = Integer.parseInt(matcher.group(1));
+    int minor = Integer.parseInt(matcher.group(2));
+    return major > CONFIGURATION_CACHE_MIN_MAJOR_VERSION
+        || (major == CONFIGURATION_CACHE_MIN_MAJOR_VERSION
+            && minor >= CONFIGURATION_CACHE_MIN_MINOR_VERSION);
+  }
+
+  private String getGradleTask(BuildContext buildContext, Optional<String> artifactProject) {
+    String gradleTask = buildContext.getRuntimeConfig().getGradleTask();
+    if (Strings.isNullOrEmpty(gradleTask)) {
+      gradleTask = DEFAULT_GRADLE_TASK;
+    }
+    // a task that's already qualified with a project path is run as given
+    if (!artifactProject.isPresent() || gradleTask.startsWith(":")) {
+      return gradleTask;
+    }
+    return artifactProject.get() + ":" + gradleTask;
+  }
+
+  /*
+   * Finds the path of the subproject, e.g. :services:web, that the configured artifact is built by
+   * from the projects included in settings.gradle. Projects are assumed to live in the directory
+   * that matches their path. Returns empty if no artifact is configured or if it belongs to the
+   * root project.
+   */
+  private Optional<String> findArtifactProject(BuildContext buildContext)
+      throws BuildStepException {
+    String artifact = buildContext.getRuntimeConfig().getArtifact();
+    Path workspaceDir = buildContext.getWorkspaceDir();
+    Path settingsPath = workspaceDir.resolve("settings.gradle");
+    if (artifact == null || !buildContext.getWorkspaceIndex().isFile(settingsPath)) {
+      return Optional.empty();
+    }
+    Path artifactPath = workspaceDir.relativize(workspaceDir.resolve(artifact).normalize());
+
+    String settings;
+    try {
+      settings = new String(Files.readAllBytes(settingsPath), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new BuildStepException(e);
+    }
+
+    String artifactProject = null;
+    int artifactProjectDepth = 0;
+    Matcher includeMatcher = INCLUDE_PATTERN.matcher(settings);
+    while (includeMatcher.find()) {
+      Matcher projectMatcher = QUOTED_STRING_PATTERN.matcher(includeMatcher.group(1));
+      while (projectMatcher.find()) {
+        String projectPath = projectMatcher.group(1);
+        String projectDir = projectPath.replaceFirst("^:", "").replace(':', '/');
+        if (projectDir.isEmpty()) {
+          continue;
+        }
+        // the most deeply nested project that contains the artifact is the one that builds it
+        int depth = Paths.get(projectDir).getNameCount();
+        if (artifactPath.startsWith(projectDir) && depth > artifactProjectDepth) {
+          artifactProject = ":" + projectDir.replace('/', ':');
+          artifactProjectDepth = depth;
+        }
+      }
+    }
+    return Optional.ofNullable(artifactProject);
+  }
+
   private String getGradleExecutable(BuildContext buildContext) {
     Path wrapperPath = buildContext.getWorkspaceDir().resolve("gradlew");
-    if (Files.exists(wrapperPath)) {
+    if (buildContext.getWorkspaceIndex().exists(wrapperPath)) {
       Path relativePath = buildContext.getWorkspaceDir().relativize(wrapperPath);
       logger.info("Gradle wrapper discovered at {}. Using wrapper instead of system gradle.",
           relativePath);
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import static com.google.cloud.runtimes.builder.Constants.DOCKERFILE_BUILD_STAGE;
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.JAR;
+
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.ArchiveSummary;
+import com.google.cloud.runtimes.builder.config.domain.Artifact;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
+import com.google.cloud.runtimes.builder.dockerfile.Instruction;
+import com.google.cloud.runtimes.builder.dockerfile.Stage;
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Build step that compiles a JAR artifact into a native executable with GraalVM native-image, in a
+ * separate stage. The configuration that the JAR and its libraries provide under
+ * META-INF/native-image, such as the reflection configuration, is picked up by native-image.
+ * Spring Boot executable JARs, whose classes and libraries are nested under BOOT-INF, can't be
+ * compiled with native-image -jar, and are rejected.
+ */
+public class NativeImageBuildStep implements BuildStep {
+
+  private final Logger logger = LoggerFactory.getLogger(NativeImageBuildStep.class);
+
+  static final String NATIVE_STAGE = "native";
+  // the directory of the executable in the native stage
+  static final String NATIVE_DIR = "/native";
+  static final String EXECUTABLE_NAME = "app";
+  // the directory of the application's classes and libraries in Spring Boot executable JARs
+  private static final String BOOT_INF_DIR = "BOOT-INF/";
+  // without quotes, so that it can be echoed by the build stage
+  private static final String BOOT_JAR_MESSAGE = "runtime_config.native_image cannot compile a "
+      + "Spring Boot executable JAR, whose classes and libraries are nested under " + BOOT_INF_DIR
+      + ". Deploy a plain JAR, such as the one built by the jar task of gradle, or build the "
+      + "native executable with the native support of Spring Boot.";
+
+  private final JdkServerLookup jdkServerLookup;
+  private final ArtifactResolver artifactResolver;
+
+  @Inject
+  NativeImageBuildStep(JdkServerLookup jdkServerLookup, ArtifactResolver artifactResolver) {
+    this.jdkServerLookup = jdkServerLookup;
+    this.artifactResolver = artifactResolver;
+  }
+
+  @Override
+  public void run(BuildContext buildContext) throws BuildStepException {
+    // the artifact is selected in the same way as for a runtime image with a JVM
+    Artifact artifact = artifactResolver.getArtifact(buildContext);
+    logger.info("Identified Java artifact for native compilation {}", artifact);
+
+    if (artifact.getType() != JAR) {
+      throw new BuildStepException(String.format("runtime_config.native_image requires a JAR "
+          + "artifact, but a %s artifact was found.", artifact.getType()));
+    }
+    if (buildContext.isCompatEnabled()) {
+      throw new BuildStepException("App Engine APIs are not available to native executables. "
+          + "runtime_config.native_image can't be used with App Engine APIs enabled.");
+    }
+    if (buildContext.getRuntimeConfig().getServer() != null) {
+      throw new BuildStepException("runtime_config.server configuration is not compatible with "
+          + "runtime_config.native_image.");
+    }
+    buildContext.setDeployedArtifact(Optional.of(artifact));
+
+    if (!buildContext.isSourceBuild()) {
+      Optional<ArchiveSummary> archiveSummary = artifactResolver.readArchive(artifact);
+      if (archiveSummary.isPresent() && isBootJar(archiveSummary.get())) {
+        throw new BuildStepException(BOOT_JAR_MESSAGE);
+      }
+      logNativeImageConfig(artifact);
+    }
+
+    Stage stage = buildContext.getDockerfile()
+        .addStage(jdkServerLookup.lookupNativeBuildImage(), NATIVE_STAGE)
+        .add("WORKDIR", NATIVE_DIR);
+    String artifactSource = "./" + buildContext.getWorkspaceDir().relativize(artifact.getPath());
+    if (buildContext.isSourceBuild()) {
+      stage.add(Instruction.copyFrom(DOCKERFILE_BUILD_STAGE, artifactSource, "app.jar"));
+      // the contents of a source build's artifact aren't known until it has been built
+      stage.add("RUN", "if jar tf app.jar | grep -q '^" + BOOT_INF_DIR + "'; then echo '"
+          + BOOT_JAR_MESSAGE + "' >&2; exit 1; fi");
+    } else {
+      addClassPathLibraries(buildContext, stage, artifact);
+      stage.add(Instruction.copy(artifactSource, "app.jar"));
+    }
+    stage.add("RUN", "native-image --no-fallback -jar app.jar -o " + EXECUTABLE_NAME);
+  }
+
+  private static boolean isBootJar(ArchiveSummary archiveSummary) {
+    return archiveSummary.getManifestAttribute("Start-Class").isPresent()
+        || archiveSummary.getEntryNames().stream().anyMatch(name -> name.startsWith(BOOT_INF_DIR));
+  }
+
+  private void logNativeImageConfig(Artifact artifact) {
+    try {
+      if (artifact.hasNativeImageConfig()) {
+        logger.info("Using the native-image configuration in {}", artifact.getPath());
+      } else {
+        logger.warn("No native-image configuration was found in {}. Classes that are only "
+            + "accessed through reflection won't be available to the native executable.",
+            artifact.getPath());
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to read {} as a JAR.", artifact.getPath(), e);
+    }
+  }
+
+  /*
+   * Copies the libraries that the JAR's manifest Class-Path refers to next to it, so that
+   * native-image compiles them into the executable.
+   */
+  private void addClassPathLibraries(BuildContext buildContext, Stage stage, Artifact artifact) {
+    List<Path> libraries;
+    try {
+      libraries = artifact.getClassPathLibraries();
+    } catch (IOException e) {
+      logger.warn("Unable to read the manifest of {}. Its Class-Path won't be added.",
+          artifact.getPath(), e);
+      return;
+    }
+    RuntimeImageBuildStep.getClassPathCopies(buildContext.getWorkspaceDir(), artifact, libraries,
+        "./").forEach(stage::add);
+  }
+
+}
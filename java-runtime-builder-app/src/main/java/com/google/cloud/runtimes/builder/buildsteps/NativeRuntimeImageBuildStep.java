@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import static com.google.cloud.runtimes.builder.buildsteps.NativeImageBuildStep.EXECUTABLE_NAME;
+import static com.google.cloud.runtimes.builder.buildsteps.NativeImageBuildStep.NATIVE_DIR;
+import static com.google.cloud.runtimes.builder.buildsteps.NativeImageBuildStep.NATIVE_STAGE;
+
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
+import com.google.cloud.runtimes.builder.dockerfile.Instruction;
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+/**
+ * Build step that copies the executable compiled by {@link NativeImageBuildStep} onto a minimal
+ * base image, without a JVM, and runs it when the container starts.
+ */
+public class NativeRuntimeImageBuildStep implements BuildStep {
+
+  private final Logger logger = LoggerFactory.getLogger(NativeRuntimeImageBuildStep.class);
+
+  private static final String APP_DIR = "/app";
+
+  private final JdkServerLookup jdkServerLookup;
+
+  @Inject
+  NativeRuntimeImageBuildStep(JdkServerLookup jdkServerLookup) {
+    this.jdkServerLookup = jdkServerLookup;
+  }
+
+  @Override
+  public void run(BuildContext buildContext) throws BuildStepException {
+    String baseImage = jdkServerLookup.lookupNativeImage();
+    logger.info("Using base image '{}' for the native executable", baseImage);
+    buildContext.setRuntimeImage(Optional.of(baseImage));
+
+    buildContext.getDockerfile().addStage(baseImage)
+        .add("WORKDIR", APP_DIR)
+        .add(Instruction.copyFrom(NATIVE_STAGE, NATIVE_DIR + "/" + EXECUTABLE_NAME,
+            APP_DIR + "/" + EXECUTABLE_NAME))
+        .add("ENTRYPOINT", "[\"" + APP_DIR + "/" + EXECUTABLE_NAME + "\"]");
+  }
+
+}
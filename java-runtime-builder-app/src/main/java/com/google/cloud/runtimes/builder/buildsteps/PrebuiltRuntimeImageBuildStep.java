@@ -16,70 +16,24 @@
 
 package com.google.cloud.runtimes.builder.buildsteps;
 
-import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.COMPAT_EXPLODED_WAR;
-import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.EXPLODED_WAR;
-
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.config.domain.Artifact;
-import com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
 import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
-import com.google.cloud.runtimes.builder.exception.ArtifactNotFoundException;
-import com.google.cloud.runtimes.builder.exception.TooManyArtifactsException;
 import com.google.cloud.runtimes.builder.injection.CompatDockerImage;
 import com.google.inject.Inject;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.List;
-import java.util.stream.Collectors;
-
 public class PrebuiltRuntimeImageBuildStep extends RuntimeImageBuildStep {
 
   @Inject
-  PrebuiltRuntimeImageBuildStep(JdkServerLookup jdkServerLookup,
+  PrebuiltRuntimeImageBuildStep(JdkServerLookup jdkServerLookup, ArtifactResolver artifactResolver,
       @CompatDockerImage String compatImageName) {
-    super(jdkServerLookup, compatImageName);
+    super(jdkServerLookup, artifactResolver, compatImageName);
   }
 
   @Override
   protected Artifact getArtifact(BuildContext buildContext) throws BuildStepException {
-    String providedArtifactPath = buildContext.getRuntimeConfig().getArtifact();
-    if (providedArtifactPath != null) {
-      // if the artifact path is set in runtime configuration, use that value
-      return Artifact.fromPath(buildContext.getWorkspaceDir().resolve(providedArtifactPath));
-    }
-
-    List<Path> artifacts;
-    try {
-      // Check if the workspace itself is an exploded war artifact
-      if (Artifact.isAnArtifact(buildContext.getWorkspaceDir())) {
-        Artifact rootArtifact = Artifact.fromPath(buildContext.getWorkspaceDir());
-        ArtifactType artifactType = rootArtifact.getType();
-        if (artifactType == EXPLODED_WAR || artifactType == COMPAT_EXPLODED_WAR) {
-          return rootArtifact;
-        }
-      }
-
-      // Potential artifacts include all files (not including directories) at the workspace root.
-      artifacts = Files.list(buildContext.getWorkspaceDir())
-          // filter out directories
-          .filter((path) -> !Files.isDirectory(path))
-          // filter out non-artifacts
-          .filter(Artifact::isAnArtifact)
-          .collect(Collectors.toList());
-    } catch (IOException e) {
-      throw new BuildStepException(e);
-    }
-
-    if (artifacts.size() < 1) {
-      throw new ArtifactNotFoundException();
-    } else if (artifacts.size() > 1) {
-      throw new TooManyArtifactsException(artifacts);
-    } else {
-      return Artifact.fromPath(artifacts.get(0));
-    }
+    return getArtifactResolver().getPrebuiltArtifact(buildContext);
   }
 
 }
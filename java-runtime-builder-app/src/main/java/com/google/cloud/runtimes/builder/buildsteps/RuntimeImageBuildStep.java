@@ -24,50 +24,373 @@ import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactT
 
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.ArchiveSummary;
 import com.google.cloud.runtimes.builder.config.domain.Artifact;
 import com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
 import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
+import com.google.cloud.runtimes.builder.config.domain.JvmProfile;
+import com.google.cloud.runtimes.builder.config.domain.Resources;
 import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import com.google.cloud.runtimes.builder.dockerfile.Instruction;
+import com.google.cloud.runtimes.builder.dockerfile.Stage;
+import com.google.common.collect.ImmutableList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
 public abstract class RuntimeImageBuildStep implements BuildStep {
 
   private final Logger logger = LoggerFactory.getLogger(RuntimeImageBuildStep.class);
 
+  private static final String BOOT_LAYERS_STAGE = "boot-layers";
+  // the directory of $APP_DESTINATION in the jdk runtime images
+  private static final String APP_DIR = "/app";
+  // the layer that Spring Boot adds the application's own classes and resources to
+  private static final String BOOT_APPLICATION_LAYER = "application";
+  private static final String WAR_STAGE = "war";
+  private static final String JRE_STAGE = "jre";
+  // the location of the JAR and of the JRE in images built by jlink
+  private static final String APP_JAR = APP_DIR + "/app.jar";
+  private static final String JRE_DIR = "/opt/java";
+  private static final int MIN_JLINK_VERSION = 11;
+  // the JDK images add the options in this variable to those of the JVM
+  static final String JVM_OPTIONS_VARIABLE = "JAVA_USER_OPTS";
+  // the entrypoint of the JDK and server images sizes the heap and selects the collector with the
+  // options in these variables, in place of its own defaults if they're set
+  static final String HEAP_OPTIONS_VARIABLE = "JAVA_HEAP_OPTS";
+  static final String GC_OPTIONS_VARIABLE = "JAVA_GC_OPTS";
+
   private final JdkServerLookup jdkServerLookup;
+  private final ArtifactResolver artifactResolver;
   private final String compatImageName;
 
-  protected RuntimeImageBuildStep(JdkServerLookup jdkServerLookup, String compatImageName) {
+  protected RuntimeImageBuildStep(JdkServerLookup jdkServerLookup,
+      ArtifactResolver artifactResolver, String compatImageName) {
     this.jdkServerLookup = jdkServerLookup;
+    this.artifactResolver = artifactResolver;
     this.compatImageName = compatImageName;
   }
 
+  protected ArtifactResolver getArtifactResolver() {
+    return artifactResolver;
+  }
+
   @Override
   public void run(BuildContext buildContext) throws BuildStepException {
     Artifact artifact = getArtifact(buildContext);
     logger.info("Identified Java artifact for deployment {}", artifact);
+    Optional<ArchiveSummary> archiveSummary = buildContext.isSourceBuild()
+        ? Optional.empty() : artifactResolver.readArchive(artifact);
+    buildContext.setDeployedArtifact(Optional.of(artifact));
 
-    String baseRuntimeImage = getBaseRuntimeImage(buildContext, artifact);
-    buildContext.getDockerfile().appendLine("FROM " + baseRuntimeImage);
-    String copyStep = "COPY";
-    if (buildContext.isSourceBuild()) {
-      copyStep += " --from=" + DOCKERFILE_BUILD_STAGE;
-    }
+    // an exploded WAR is deployed in place of a packaged one if it's exploded while building
+    ArtifactType artifactType = artifact.getType();
+    boolean explodeWar = artifactType == WAR && buildContext.getRuntimeConfig().getExplodeWar();
+    String baseRuntimeImage = getBaseRuntimeImage(buildContext,
+        explodeWar ? new Artifact(EXPLODED_WAR, artifact.getPath()) : artifact);
+    buildContext.setRuntimeImage(Optional.of(baseRuntimeImage));
+    checkClassFileVersion(buildContext, archiveSummary, baseRuntimeImage);
+    boolean compatImage = baseRuntimeImage.equals(compatImageName);
+    List<String> copyFlags = buildContext.isSourceBuild()
+        ? ImmutableList.of("--from=" + DOCKERFILE_BUILD_STAGE) : ImmutableList.of();
 
     String relativeArtifactPath = "./" + buildContext.getWorkspaceDir()
         .relativize(artifact.getPath()).toString();
 
+    // the contents of a source build's artifact aren't known until it has been built
+    if (!buildContext.isSourceBuild() && !compatImage
+        && addBootLayers(buildContext, artifact, baseRuntimeImage, relativeArtifactPath)) {
+      return;
+    }
+
+    boolean splitWarLayers = buildContext.getRuntimeConfig().getSplitWarLayers() && !compatImage
+        && (artifactType == WAR || artifactType == EXPLODED_WAR);
+    if (explodeWar || splitWarLayers) {
+      addWarStage(buildContext, artifactType == WAR, splitWarLayers, baseRuntimeImage,
+          compatImage ? "/app/" : "$APP_DESTINATION_EXPLODED_WAR", copyFlags,
+          relativeArtifactPath);
+      return;
+    }
+
+    List<Path> classPathLibraries = !buildContext.isSourceBuild() && artifactType == JAR
+        ? getClassPathLibraries(artifact) : Collections.emptyList();
+    if (artifactType == JAR && buildContext.getRuntimeConfig().getJlink()) {
+      addJlinkStage(buildContext, artifact, classPathLibraries, baseRuntimeImage, copyFlags,
+          relativeArtifactPath);
+      return;
+    }
+
+    Stage stage = addRuntimeImage(buildContext, baseRuntimeImage, true);
+    addClassPathLibraries(buildContext, stage, artifact, classPathLibraries);
+
     // compat runtime requires a special app destination
-    String artifactDestination = baseRuntimeImage.equals(compatImageName)
+    String artifactDestination = compatImage
         ? "/app/"
         : (artifact.getType() == EXPLODED_WAR ? "$APP_DESTINATION_EXPLODED_WAR"
             : "$APP_DESTINATION");
 
-    buildContext.getDockerfile().appendLine(copyStep + " " + relativeArtifactPath + " "
-        + artifactDestination);
+    stage.add(Instruction.copy(copyFlags, relativeArtifactPath, artifactDestination));
+  }
+
+  /*
+   * Warns if the application's classes were compiled for a later Java version than the JDK of the
+   * runtime image, which would fail to load them with an UnsupportedClassVersionError.
+   */
+  private void checkClassFileVersion(BuildContext buildContext,
+      Optional<ArchiveSummary> archiveSummary, String baseRuntimeImage) {
+    Optional<Integer> requiredVersion = archiveSummary
+        .flatMap(ArchiveSummary::getRequiredJavaVersion);
+    Optional<Integer> imageVersion = JdkServerLookup.getJavaVersion(baseRuntimeImage,
+        buildContext.getRuntimeConfig().getJdk());
+    if (requiredVersion.isPresent() && imageVersion.isPresent()
+        && requiredVersion.get() > imageVersion.get()) {
+      logger.warn("The artifact's classes require Java {}, but the runtime image {} is Java {}. "
+          + "Select a later JDK with runtime_config.jdk.", requiredVersion.get(),
+          baseRuntimeImage, imageVersion.get());
+    }
+  }
+
+  /*
+   * If the artifact is a Spring Boot JAR with a layer index, extracts its layers in a separate
+   * stage and copies each of them into its own layer of the runtime image, from the least to the
+   * most frequently changing, so that a change to the application doesn't invalidate the layers of
+   * its dependencies. Returns false if the artifact isn't a layered JAR.
+   */
+  private boolean addBootLayers(BuildContext buildContext, Artifact artifact,
+      String baseRuntimeImage, String relativeArtifactPath) throws BuildStepException {
+    List<String> layers;
+    Optional<String> mainClass;
+    try {
+      layers = artifact.getBootLayers();
+      mainClass = artifact.getMainClass();
+    } catch (IOException e) {
+      logger.warn("Unable to read {} as a JAR. Adding it as a single layer.", artifact.getPath(),
+          e);
+      return false;
+    }
+    if (layers.isEmpty() || !mainClass.isPresent()) {
+      return false;
+    }
+    logger.info("Spring Boot layer index found. Adding layers {} separately.", layers);
+    if (buildContext.getRuntimeConfig().getJlink()) {
+      logger.warn("runtime_config.jlink is not available for Spring Boot layered JARs, whose "
+          + "dependencies jdeps can't analyze. Using the full JDK image.");
+    }
+
+    buildContext.getDockerfile().addStage(baseRuntimeImage, BOOT_LAYERS_STAGE)
+        .add("WORKDIR", "/layers")
+        .add(Instruction.copy(relativeArtifactPath, "app.jar"))
+        .add("RUN", "java -Djarmode=layertools -jar app.jar extract && rm app.jar");
+    Stage stage = addRuntimeImage(buildContext, baseRuntimeImage, true);
+    for (String layer : layers) {
+      Instruction copy = Instruction.copyFrom(BOOT_LAYERS_STAGE, "/layers/" + layer + "/",
+          APP_DIR + "/");
+      // only the last layer, which Spring Boot names application, holds the application itself
+      stage.add(layer.equals(BOOT_APPLICATION_LAYER) ? copy : copy.asDependencies());
+    }
+    // the launcher finds the application's classes relative to its own location
+    stage.add("CMD", "[\"java\", \"-cp\", \"" + APP_DIR + "\", \"" + mainClass.get() + "\"]");
+    return true;
+  }
+
+  private List<Path> getClassPathLibraries(Artifact artifact) {
+    try {
+      return artifact.getClassPathLibraries();
+    } catch (IOException e) {
+      logger.warn("Unable to read the manifest of {}. Its Class-Path won't be added.",
+          artifact.getPath(), e);
+      return Collections.emptyList();
+    }
+  }
+
+  /*
+   * Copies the libraries that a JAR's manifest Class-Path refers to into layers ahead of the JAR,
+   * at the same location relative to it.
+   */
+  private void addClassPathLibraries(BuildContext buildContext, Stage stage, Artifact artifact,
+      List<Path> libraries) {
+    getClassPathCopies(buildContext.getWorkspaceDir(), artifact, libraries, APP_DIR + "/")
+        .forEach(stage::add);
+  }
+
+  /**
+   * Returns the COPY instructions that add the given Class-Path libraries of a JAR to the given
+   * directory, at the same location relative to it. Each directory of libraries is copied as a
+   * whole, and the libraries next to the JAR share a single COPY, so that the number of layers
+   * doesn't grow with the number of libraries.
+   */
+  static List<Instruction> getClassPathCopies(Path workspaceDir, Artifact artifact,
+      List<Path> libraries, String destinationDir) {
+    Path jarDir = artifact.getPath().getParent();
+    List<Instruction> copies = new ArrayList<>();
+    List<String> jarDirFiles = new ArrayList<>();
+    for (Path library : libraries) {
+      String source = "./" + workspaceDir.relativize(library);
+      if (Files.isDirectory(library)) {
+        copies.add(Instruction.copy(source, destinationDir + jarDir.relativize(library))
+            .asDependencies());
+      } else {
+        jarDirFiles.add(source);
+      }
+    }
+    if (!jarDirFiles.isEmpty()) {
+      // a COPY of several sources requires a destination directory, which ends with a slash
+      copies.add(Instruction.copy(String.join(" ", jarDirFiles), destinationDir)
+          .asDependencies());
+    }
+    return copies;
+  }
+
+  /*
+   * Prepares the WAR in a separate stage of the JDK image of the selected JDK, and copies the
+   * result to the given destination. A packaged WAR is unpacked there with the jar tool, so that
+   * the server doesn't have to unpack it each time the container starts, and is deployed exploded.
+   * If splitWarLayers is set, the WAR's libraries are moved out of the way and copied into a
+   * separate layer ahead of the rest of its contents, so that a change to the application's
+   * classes or resources doesn't invalidate the layer of its dependencies.
+   */
+  private void addWarStage(BuildContext buildContext, boolean explodeWar, boolean splitWarLayers,
+      String baseRuntimeImage, String destination, List<String> copyFlags,
+      String relativeArtifactPath) throws BuildStepException {
+    String jdkImage = jdkServerLookup.lookupJdkImage(buildContext.getRuntimeConfig().getJdk());
+    Stage warStage = buildContext.getDockerfile().addStage(jdkImage, WAR_STAGE);
+
+    List<String> commands = new ArrayList<>();
+    if (explodeWar) {
+      warStage.add(Instruction.copy(copyFlags, relativeArtifactPath, "/app.war"));
+      commands.add("mkdir /war");
+      commands.add("cd /war");
+      commands.add("jar xf /app.war");
+      commands.add("rm /app.war");
+    } else {
+      warStage.add(Instruction.copy(copyFlags, relativeArtifactPath, "/war"));
+    }
+    if (splitWarLayers) {
+      commands.add("mkdir -p /war-lib/WEB-INF");
+      commands.add("if [ -d /war/WEB-INF/lib ]; then mv /war/WEB-INF/lib /war-lib/WEB-INF/; fi");
+    }
+    if (!commands.isEmpty()) {
+      warStage.add("RUN", String.join(" && ", commands));
+    }
+
+    Stage stage = addRuntimeImage(buildContext, baseRuntimeImage, true);
+    if (splitWarLayers) {
+      stage.add(Instruction.copyFrom(WAR_STAGE, "/war-lib", destination).asDependencies());
+    }
+    stage.add(Instruction.copyFrom(WAR_STAGE, "/war", destination));
+  }
+
+  /*
+   * Builds a JRE that holds only the modules that the JAR and the libraries on its Class-Path
+   * depend on, as reported by jdeps, in a separate stage of the selected JDK image. The JAR is
+   * deployed with that JRE on the minimal base image of the jlink key instead of the JDK image.
+   */
+  private void addJlinkStage(BuildContext buildContext, Artifact artifact,
+      List<Path> classPathLibraries, String jdkImage, List<String> copyFlags,
+      String relativeArtifactPath) throws BuildStepException {
+    Optional<Integer> javaVersion = JdkServerLookup.getJavaVersion(jdkImage,
+        buildContext.getRuntimeConfig().getJdk());
+    if (javaVersion.isPresent() && javaVersion.get() < MIN_JLINK_VERSION) {
+      throw new BuildStepException(String.format("runtime_config.jlink requires JDK %d or later, "
+          + "but the JDK image %s is JDK %d. Select a later JDK with runtime_config.jdk.",
+          MIN_JLINK_VERSION, jdkImage, javaVersion.get()));
+    }
+    String jlinkImage = jdkServerLookup.lookupJlinkImage();
+    logger.info("Using base image '{}' for a JRE built by jlink from '{}'", jlinkImage, jdkImage);
+    buildContext.setRuntimeImage(Optional.of(jlinkImage));
+
+    Stage jreStage = buildContext.getDockerfile().addStage(jdkImage, JRE_STAGE);
+    addClassPathLibraries(buildContext, jreStage, artifact, classPathLibraries);
+    jreStage.add(Instruction.copy(copyFlags, relativeArtifactPath, APP_JAR))
+        // versioned classes of multi-release JARs are analyzed for the JDK being linked
+        .add("RUN", "jdeps -q --ignore-missing-deps --multi-release "
+            + javaVersion.map(String::valueOf).orElse("base") + " --print-module-deps $(find "
+            + APP_DIR + " -name '*.jar') > /jre-modules"
+            + " && jlink --add-modules $(cat /jre-modules) --strip-debug --no-man-pages"
+            + " --no-header-files --output " + JRE_DIR);
+    // the JVM reads its options from JAVA_TOOL_OPTIONS, without the scripts of the JDK images
+    Stage stage = addRuntimeImage(buildContext, jlinkImage, false)
+        .add(Instruction.copyFrom(JRE_STAGE, JRE_DIR, JRE_DIR))
+        .add("ENV", "JAVA_HOME=" + JRE_DIR)
+        .add("ENV", "PATH=" + JRE_DIR + "/bin:$PATH");
+    addClassPathLibraries(buildContext, stage, artifact, classPathLibraries);
+    stage.add(Instruction.copy(copyFlags, relativeArtifactPath, APP_JAR))
+        .add("CMD", "[\"java\", \"-jar\", \"" + APP_JAR + "\"]");
+  }
+
+  /*
+   * Starts the runtime image from the given base image. If app.yaml sets the size of the instances,
+   * or runtime_config.jvm_profile is set, the heap and the garbage collector of the JVM are sized
+   * for the instance, instead of by the image's defaults or the JVM's ergonomics, which older JDKs
+   * base on the host rather than the container. The JDK and server images are given the options
+   * in place of their own heap and collector options, which the JVM would otherwise also be
+   * started with. Other images are given them through JAVA_TOOL_OPTIONS.
+   */
+  private Stage addRuntimeImage(BuildContext buildContext, String image,
+      boolean imageEntrypoint) throws BuildStepException {
+    Stage stage = buildContext.getDockerfile().addStage(image);
+    List<String> jvmOptions = getJvmOptions(buildContext);
+    if (jvmOptions.isEmpty()) {
+      return stage;
+    }
+    logger.info("Using JVM options {}", jvmOptions);
+    if (!imageEntrypoint) {
+      return stage.add("ENV", "JAVA_TOOL_OPTIONS=\"" + String.join(" ", jvmOptions) + "\"");
+    }
+    Map<Boolean, List<String>> heapOptions = jvmOptions.stream()
+        .collect(Collectors.partitioningBy(option -> option.startsWith("-Xm")));
+    return stage.add("ENV", HEAP_OPTIONS_VARIABLE + "=\""
+        + String.join(" ", heapOptions.get(true)) + "\"")
+        .add("ENV", GC_OPTIONS_VARIABLE + "=\"" + String.join(" ", heapOptions.get(false)) + "\"");
+  }
+
+  private List<String> getJvmOptions(BuildContext buildContext) throws BuildStepException {
+    Optional<Resources> resources = buildContext.getResources();
+    String jvmProfileSetting = buildContext.getRuntimeConfig().getJvmProfile();
+    if (!resources.isPresent() && jvmProfileSetting == null) {
+      return Collections.emptyList();
+    }
+    JvmProfile jvmProfile;
+    if (jvmProfileSetting != null) {
+      try {
+        jvmProfile = JvmProfile.fromSetting(jvmProfileSetting);
+      } catch (IllegalArgumentException e) {
+        throw new BuildStepException(e.getMessage(), e);
+      }
+    } else {
+      // a fixed number of instances usually processes work in the background
+      jvmProfile = buildContext.isManualScaling() ? JvmProfile.THROUGHPUT : JvmProfile.LATENCY;
+    }
+    Resources instance = resources.orElseGet(Resources::new);
+
+    List<String> options = new ArrayList<>();
+    // the metaspace, thread stacks and code cache take a larger share of small instances
+    double memoryMb = instance.getMemoryGb() * 1024;
+    long heapMb = Math.round(memoryMb * (memoryMb < 1024 ? 0.5 : 0.75));
+    if (jvmProfile == JvmProfile.THROUGHPUT) {
+      // a heap that doesn't need to grow is never resized by a full collection
+      options.add("-Xms" + heapMb + "m");
+    }
+    options.add("-Xmx" + heapMb + "m");
+    // collecting in parallel only pays off with more than one CPU
+    if (instance.getCpu() < 2) {
+      options.add("-XX:+UseSerialGC");
+    } else {
+      options.add(jvmProfile.getGcOption());
+      options.add("-XX:ParallelGCThreads=" + (int) Math.ceil(instance.getCpu()));
+    }
+    return options;
   }
 
   private String getBaseRuntimeImage(BuildContext buildContext, Artifact artifact)
@@ -82,8 +405,10 @@ public abstract class RuntimeImageBuildStep implements BuildStep {
       if (artifactType != EXPLODED_WAR) {
         throw new BuildStepException(String.format("App Engine APIs have been enabled. In order to "
             + "use App Engine APIs, an exploded WAR artifact is required, but a %s artifact was "
-            + "found. See https://cloud.google.com/appengine/docs/flexible/java/upgrading for more "
-            + "detail.", artifact.getType()));
+            + "found. A WAR artifact can be exploded while building by setting "
+            + "runtime_config.explode_war. See "
+            + "https://cloud.google.com/appengine/docs/flexible/java/upgrading for more detail.",
+            artifact.getType()));
       }
       baseImage = compatImageName;
     } else if (artifactType == EXPLODED_WAR || artifactType == WAR) {
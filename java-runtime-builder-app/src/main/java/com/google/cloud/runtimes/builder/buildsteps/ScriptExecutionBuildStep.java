@@ -20,31 +20,87 @@ import com.google.cloud.runtimes.builder.Constants;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
-import com.google.common.annotations.VisibleForTesting;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
+import com.google.cloud.runtimes.builder.dockerfile.Instruction;
+import com.google.cloud.runtimes.builder.dockerfile.Stage;
+import com.google.cloud.runtimes.builder.injection.BuilderDockerImage;
+import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
- * Build step that invokes an arbitrary string as a shell command.
+ * Build step that invokes an arbitrary string as a shell command. The inputs that the script's
+ * dependencies are resolved from, and a command that prefetches them, can be declared with
+ * runtime_config.build_script_inputs and runtime_config.build_script_prefetch. They're added in a
+ * layer ahead of the rest of the workspace, which stays cached until one of the inputs changes.
  */
 public class ScriptExecutionBuildStep implements BuildStep {
 
-  @VisibleForTesting
-  static final String BUILD_IMAGE = "gcr.io/gcp-runtimes/java/runtime-builder";
   private final String buildCommand;
+  private final String builderImage;
+  private final CacheMounts cacheMounts;
 
   @Inject
-  ScriptExecutionBuildStep(@Assisted String buildCommand) {
+  ScriptExecutionBuildStep(@Assisted String buildCommand,
+      @BuilderDockerImage String builderImage, CacheMounts cacheMounts) {
     this.buildCommand = buildCommand;
+    this.builderImage = builderImage;
+    this.cacheMounts = cacheMounts;
   }
 
   @Override
   public void run(BuildContext buildContext) throws BuildStepException {
-    buildContext.getDockerfile()
-        .appendLine("FROM " + BUILD_IMAGE + " as " + Constants.DOCKERFILE_BUILD_STAGE)
-        .appendLine("ADD . .")
-        .appendLine("RUN " + buildCommand)
-        .appendLine();
+    cacheMounts.addSyntaxDirective(buildContext.getDockerfile());
+    Stage stage = buildContext.getDockerfile()
+        .addStage(builderImage, Constants.DOCKERFILE_BUILD_STAGE);
+
+    addDependencyLayer(buildContext, stage);
+
+    stage.add("ADD", ". .")
+        // the script may invoke either build tool, so both caches are mounted
+        .add(cacheMounts.run(buildCommand, CacheMounts.MAVEN_CACHE_DIR,
+            CacheMounts.GRADLE_CACHE_DIR));
+  }
+
+  /*
+   * Adds only the declared inputs, and runs the prefetch command, before the rest of the workspace.
+   * The paths keep their location in the workspace, so that the script finds them where it expects.
+   */
+  private void addDependencyLayer(BuildContext buildContext, Stage stage)
+      throws BuildStepException {
+    RuntimeConfig runtimeConfig = buildContext.getRuntimeConfig();
+    String inputs = Strings.nullToEmpty(runtimeConfig.getBuildScriptInputs()).trim();
+    if (!inputs.isEmpty()) {
+      WorkspaceIndex workspaceIndex = buildContext.getWorkspaceIndex();
+      for (String input : inputs.split("\\s+")) {
+        if (input.matches(".*[*?\\[].*")) {
+          throw new BuildStepException("runtime_config.build_script_inputs must list individual "
+              + "paths, but '" + input + "' is a glob pattern, which is not supported.");
+        }
+        Path inputPath = Paths.get(input).normalize();
+        if (inputPath.toString().isEmpty()) {
+          throw new BuildStepException("runtime_config.build_script_inputs must not include the "
+              + "workspace root ('" + input + "'), which is always added after the prefetch "
+              + "command.");
+        }
+        if (inputPath.isAbsolute() || inputPath.startsWith("..")
+            || !workspaceIndex.exists(inputPath)) {
+          throw new BuildStepException("runtime_config.build_script_inputs must list paths that "
+              + "exist in the workspace, but '" + input + "' was not found.");
+        }
+        stage.add(Instruction.copy(inputPath.toString(), inputPath.toString()).asDependencies());
+      }
+    }
+
+    String prefetch = runtimeConfig.getBuildScriptPrefetch();
+    if (!Strings.isNullOrEmpty(prefetch)) {
+      stage.add(cacheMounts.run(prefetch, CacheMounts.MAVEN_CACHE_DIR,
+          CacheMounts.GRADLE_CACHE_DIR).asDependencies());
+    }
   }
 
 }
@@ -26,21 +26,13 @@ public class SourceBuildRuntimeImageBuildStep extends RuntimeImageBuildStep {
 
   @Inject
   SourceBuildRuntimeImageBuildStep(JdkServerLookup jdkServerLookup,
-      @CompatDockerImage String compatImage) {
-    super(jdkServerLookup, compatImage);
+      ArtifactResolver artifactResolver, @CompatDockerImage String compatImage) {
+    super(jdkServerLookup, artifactResolver, compatImage);
   }
 
   @Override
   protected Artifact getArtifact(BuildContext buildContext) {
-    String providedArtifactPath = buildContext.getRuntimeConfig().getArtifact();
-
-    // Require that the artifact name is explicitly provided by the user.
-    if (providedArtifactPath == null) {
-      throw new IllegalStateException("Unable to determine the artifact path. In order to build "
-          + "from source, the path to the artifact must be specified in the runtime_config.artifact"
-          + " field.");
-    }
-    return Artifact.fromPath(buildContext.getWorkspaceDir().resolve(providedArtifactPath));
+    return getArtifactResolver().getBuiltArtifact(buildContext);
   }
 
 }
@@ -16,9 +16,13 @@
 
 package com.google.cloud.runtimes.builder.buildsteps.base;
 
+import com.google.cloud.runtimes.builder.buildsteps.AppCdsBuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.ContextPruningBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.GradleBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.JettyOptionsBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.MavenBuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.NativeImageBuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.NativeRuntimeImageBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.PrebuiltRuntimeImageBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.ScriptExecutionBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.SourceBuildRuntimeImageBuildStep;
@@ -40,6 +44,14 @@ public interface BuildStepFactory {
 
   PrebuiltRuntimeImageBuildStep createPrebuiltRuntimeImageBuildStep();
 
+  NativeImageBuildStep createNativeImageBuildStep();
+
+  NativeRuntimeImageBuildStep createNativeRuntimeImageBuildStep();
+
   JettyOptionsBuildStep createJettyOptionsBuildStep();
 
+  AppCdsBuildStep createAppCdsBuildStep();
+
+  ContextPruningBuildStep createContextPruningBuildStep();
+
 }
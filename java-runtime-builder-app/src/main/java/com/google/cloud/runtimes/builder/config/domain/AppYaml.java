@@ -27,6 +27,8 @@ public class AppYaml {
 
   private RuntimeConfig runtimeConfig = new RuntimeConfig();
   private BetaSettings betaSettings = new BetaSettings();
+  private Resources resources;
+  private ManualScaling manualScaling;
 
   /**
    * Checks environment variables and overwrites any existing settings in this object.
@@ -54,4 +56,28 @@ public class AppYaml {
   public void setBetaSettings(BetaSettings betaSettings) {
     this.betaSettings = betaSettings;
   }
+
+  /**
+   * Returns the resources section, or {@code null} if app.yaml doesn't set it.
+   */
+  @JsonProperty("resources")
+  public Resources getResources() {
+    return resources;
+  }
+
+  public void setResources(Resources resources) {
+    this.resources = resources;
+  }
+
+  /**
+   * Returns the manual_scaling section, or {@code null} if the instances are scaled automatically.
+   */
+  @JsonProperty("manual_scaling")
+  public ManualScaling getManualScaling() {
+    return manualScaling;
+  }
+
+  public void setManualScaling(ManualScaling manualScaling) {
+    this.manualScaling = manualScaling;
+  }
 }
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A summary of a JAR or WAR: its entries, manifest, Spring Boot layer index and class file
+ * version. The summary is read from the end of central directory record and the central directory
+ * of the zip archive with positional reads, and only the few entries that it reports on are
+ * inflated, so that large archives are summarized with a handful of small reads, and truncated or
+ * corrupt archives are detected before they're sent to docker.
+ */
+public class ArchiveSummary {
+
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int EOCD_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_EOCD_SIZE = 56;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xffffffffL;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private static final int CLASS_MAGIC = 0xcafebabe;
+  private static final int CLASS_HEADER_SIZE = 8;
+  // class file versions are 44 more than the Java versions that introduced them
+  private static final int CLASS_VERSION_OFFSET = 44;
+  // the largest manifest or layer index that is read
+  private static final int MAX_ENTRY_SIZE = 1 << 20;
+
+  private static final String MANIFEST = "META-INF/MANIFEST.MF";
+  private static final String BOOT_LAYER_INDEX = "BOOT-INF/layers.idx";
+  private static final String BOOT_CLASSES_DIR = "BOOT-INF/classes/";
+  // each layer is listed as - "name": followed by the paths that it contains
+  private static final Pattern BOOT_LAYER_PATTERN = Pattern.compile("^- \"(.+)\":$");
+
+  private final Set<String> entryNames;
+  private final Optional<Manifest> manifest;
+  private final List<String> bootLayers;
+  private final Optional<Integer> classFileVersion;
+
+  private ArchiveSummary(Set<String> entryNames, Optional<Manifest> manifest,
+      List<String> bootLayers, Optional<Integer> classFileVersion) {
+    this.entryNames = entryNames;
+    this.manifest = manifest;
+    this.bootLayers = bootLayers;
+    this.classFileVersion = classFileVersion;
+  }
+
+  /**
+   * Reads the summary of the archive at the given path.
+   *
+   * @throws ZipException if the file isn't a valid zip archive
+   * @throws IOException if the file can't be read
+   */
+  public static ArchiveSummary read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new Reader(path, channel).read();
+    }
+  }
+
+  /**
+   * Returns the names of the entries of the archive, in the order of its central directory.
+   */
+  public Set<String> getEntryNames() {
+    return entryNames;
+  }
+
+  public Optional<Manifest> getManifest() {
+    return manifest;
+  }
+
+  /**
+   * Returns the Main-Class declared in the manifest.
+   */
+  public Optional<String> getMainClass() {
+    return getManifestAttribute("Main-Class");
+  }
+
+  /**
+   * Returns the value of the given main attribute of the manifest.
+   */
+  public Optional<String> getManifestAttribute(String name) {
+    return manifest.map(m -> m.getMainAttributes().getValue(name));
+  }
+
+  /**
+   * Returns the layers listed in the Spring Boot layer index, ordered from the least to the most
+   * frequently changing, or an empty list if the archive has no layer index.
+   */
+  public List<String> getBootLayers() {
+    return bootLayers;
+  }
+
+  /**
+   * Returns the major class file version of the application's classes: the Start-Class of a
+   * Spring Boot JAR, the Main-Class, or else the first class in the archive.
+   */
+  public Optional<Integer> getClassFileVersion() {
+    return classFileVersion;
+  }
+
+  /**
+   * Returns the earliest Java version that can load the application's classes.
+   */
+  public Optional<Integer> getRequiredJavaVersion() {
+    return classFileVersion.map(version -> version - CLASS_VERSION_OFFSET);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("entries", entryNames.size())
+        .add("mainClass", getMainClass().orElse(null))
+        .add("bootLayers", bootLayers)
+        .add("classFileVersion", classFileVersion.orElse(null))
+        .toString();
+  }
+
+  /*
+   * Reads an archive from an open channel.
+   */
+  private static class Reader {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    // the offset of the archive in the file, after any data prepended to it, such as the launch
+    // script of a fully executable Spring Boot JAR
+    private long archiveStart;
+
+    private Reader(Path path, FileChannel channel) {
+      this.path = path;
+      this.channel = channel;
+    }
+
+    private ArchiveSummary read() throws IOException {
+      readCentralDirectory();
+
+      Optional<Manifest> manifest = Optional.empty();
+      if (entries.containsKey(MANIFEST)) {
+        byte[] contents = readEntry(MANIFEST, entries.get(MANIFEST), MAX_ENTRY_SIZE);
+        manifest = Optional.of(new Manifest(new ByteArrayInputStream(contents)));
+      }
+
+      List<String> bootLayers = new ArrayList<>();
+      if (entries.containsKey(BOOT_LAYER_INDEX)) {
+        byte[] contents = readEntry(BOOT_LAYER_INDEX, entries.get(BOOT_LAYER_INDEX),
+            MAX_ENTRY_SIZE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new ByteArrayInputStream(contents), StandardCharsets.UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            Matcher matcher = BOOT_LAYER_PATTERN.matcher(line.trim());
+            if (matcher.matches()) {
+              bootLayers.add(matcher.group(1));
+            }
+          }
+        }
+      }
+
+      Optional<Integer> classFileVersion = Optional.empty();
+      Optional<String> classEntry = findApplicationClass(manifest);
+      if (classEntry.isPresent()) {
+        byte[] header = readEntry(classEntry.get(), entries.get(classEntry.get()),
+            CLASS_HEADER_SIZE);
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        // the version of an entry that isn't a class file is unknown, but the archive is valid
+        if (header.length == CLASS_HEADER_SIZE && buffer.getInt(0) == CLASS_MAGIC) {
+          classFileVersion = Optional.of(buffer.getShort(6) & 0xffff);
+        }
+      }
+
+      return new ArchiveSummary(ImmutableSet.copyOf(entries.keySet()), manifest,
+          ImmutableList.copyOf(bootLayers), classFileVersion);
+    }
+
+    private void readCentralDirectory() throws IOException {
+      long size = channel.size();
+      if (size < EOCD_SIZE) {
+        throw invalid("it is too short to be a zip archive");
+      }
+
+      // the end of central directory record is followed by a comment of up to 64k
+      int tailSize = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT_SIZE);
+      ByteBuffer tail = readBytes(size - tailSize, tailSize);
+      int eocd = -1;
+      for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+        if (tail.getInt(i) == EOCD_SIGNATURE
+            && i + EOCD_SIZE + (tail.getShort(i + 20) & 0xffff) <= tailSize) {
+          eocd = i;
+          break;
+        }
+      }
+      if (eocd < 0) {
+        throw invalid("no end of central directory record was found. The archive may be "
+            + "truncated");
+      }
+
+      long centralDirectoryEnd = size - tailSize + eocd;
+      long entryCount = tail.getShort(eocd + 10) & 0xffff;
+      long centralDirectorySize = tail.getInt(eocd + 12) & 0xffffffffL;
+      long centralDirectoryOffset = tail.getInt(eocd + 16) & 0xffffffffL;
+      boolean zip64 = entryCount == 0xffff || centralDirectorySize == ZIP64_MAGIC
+          || centralDirectoryOffset == ZIP64_MAGIC;
+      if (zip64) {
+        long zip64Eocd = centralDirectoryEnd - ZIP64_LOCATOR_SIZE - ZIP64_EOCD_SIZE;
+        if (zip64Eocd < 0
+            || readBytes(centralDirectoryEnd - ZIP64_LOCATOR_SIZE, 4).getInt(0)
+                != ZIP64_LOCATOR_SIGNATURE) {
+          throw invalid("the zip64 end of central directory locator is missing");
+        }
+        ByteBuffer record = readBytes(zip64Eocd, ZIP64_EOCD_SIZE);
+        if (record.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+          throw invalid("the zip64 end of central directory record is missing");
+        }
+        entryCount = record.getLong(32);
+        centralDirectorySize = record.getLong(40);
+        centralDirectoryOffset = record.getLong(48);
+        centralDirectoryEnd = zip64Eocd;
+      }
+
+      long centralDirectoryStart = centralDirectoryEnd - centralDirectorySize;
+      if (centralDirectorySize < 0 || centralDirectoryStart < centralDirectoryOffset
+          || centralDirectorySize > Integer.MAX_VALUE) {
+        throw invalid("the central directory is truncated or corrupt");
+      }
+      archiveStart = centralDirectoryStart - centralDirectoryOffset;
+
+      ByteBuffer centralDirectory = readBytes(centralDirectoryStart, (int) centralDirectorySize);
+      long headerCount = 0;
+      int position = 0;
+      while (position < centralDirectorySize) {
+        if (centralDirectorySize - position < CENTRAL_HEADER_SIZE
+            || centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+          throw invalid("the central directory is corrupt");
+        }
+        int nameLength = centralDirectory.getShort(position + 28) & 0xffff;
+        int extraLength = centralDirectory.getShort(position + 30) & 0xffff;
+        int commentLength = centralDirectory.getShort(position + 32) & 0xffff;
+        int next = position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        if (next > centralDirectorySize) {
+          throw invalid("the central directory is corrupt");
+        }
+
+        byte[] name = new byte[nameLength];
+        ((ByteBuffer) centralDirectory.duplicate().position(position + CENTRAL_HEADER_SIZE))
+            .get(name);
+        Entry entry = new Entry(centralDirectory.getShort(position + 10) & 0xffff,
+            centralDirectory.getInt(position + 20) & 0xffffffffL,
+            centralDirectory.getInt(position + 24) & 0xffffffffL,
+            centralDirectory.getInt(position + 42) & 0xffffffffL);
+        readZip64Extra(entry, centralDirectory, position + CENTRAL_HEADER_SIZE + nameLength,
+            extraLength);
+        // like ZipFile, the first of the entries with the same name is the one that is read
+        entries.putIfAbsent(new String(name, StandardCharsets.UTF_8), entry);
+        headerCount++;
+        position = next;
+      }
+
+      long expectedCount = zip64 ? entryCount : entryCount & 0xffff;
+      long readCount = zip64 ? headerCount : headerCount & 0xffff;
+      if (readCount != expectedCount) {
+        throw invalid("the central directory lists " + headerCount + " entries, but "
+            + expectedCount + " were expected");
+      }
+    }
+
+    /*
+     * Replaces the sizes and offset of an entry that don't fit in 32 bits with those in its zip64
+     * extra field, which lists only those, in this order.
+     */
+    private void readZip64Extra(Entry entry, ByteBuffer buffer, int start, int length) {
+      int position = start;
+      while (position + 4 <= start + length) {
+        int id = buffer.getShort(position) & 0xffff;
+        int size = buffer.getShort(position + 2) & 0xffff;
+        if (id == ZIP64_EXTRA_ID) {
+          int field = position + 4;
+          if (entry.size == ZIP64_MAGIC && field + 8 <= position + 4 + size) {
+            entry.size = buffer.getLong(field);
+            field += 8;
+          }
+          if (entry.compressedSize == ZIP64_MAGIC && field + 8 <= position + 4 + size) {
+            entry.compressedSize = buffer.getLong(field);
+            field += 8;
+          }
+          if (entry.localHeaderOffset == ZIP64_MAGIC && field + 8 <= position + 4 + size) {
+            entry.localHeaderOffset = buffer.getLong(field);
+          }
+          return;
+        }
+        position += 4 + size;
+      }
+    }
+
+    private Optional<String> findApplicationClass(Optional<Manifest> manifest) {
+      Optional<String> startClass = manifest
+          .map(m -> m.getMainAttributes().getValue("Start-Class"));
+      if (startClass.isPresent()) {
+        String name = BOOT_CLASSES_DIR + toEntryName(startClass.get());
+        if (entries.containsKey(name)) {
+          return Optional.of(name);
+        }
+      }
+      Optional<String> mainClass = manifest
+          .map(m -> m.getMainAttributes().getValue("Main-Class"));
+      if (mainClass.isPresent() && entries.containsKey(toEntryName(mainClass.get()))) {
+        return Optional.of(toEntryName(mainClass.get()));
+      }
+      return entries.keySet().stream()
+          .filter(name -> name.endsWith(".class") && !name.startsWith("META-INF/")
+              && !name.endsWith("module-info.class"))
+          .findFirst();
+    }
+
+    private static String toEntryName(String className) {
+      return className.trim().replace('.', '/') + ".class";
+    }
+
+    /*
+     * Reads up to the given number of bytes from the start of an entry, inflating only as much of
+     * it as that takes.
+     */
+    private byte[] readEntry(String name, Entry entry, int maxLength) throws IOException {
+      if (entry.size > maxLength && maxLength == MAX_ENTRY_SIZE) {
+        throw invalid("the entry " + name + " is larger than " + MAX_ENTRY_SIZE + " bytes");
+      }
+      long headerPosition = archiveStart + entry.localHeaderOffset;
+      if (headerPosition + LOCAL_HEADER_SIZE > channel.size()) {
+        throw invalid("the entry " + name + " is truncated");
+      }
+      ByteBuffer header = readBytes(headerPosition, LOCAL_HEADER_SIZE);
+      if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+        throw invalid("the local header of the entry " + name + " is corrupt");
+      }
+      long dataPosition = headerPosition + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xffff)
+          + (header.getShort(28) & 0xffff);
+      if (dataPosition + entry.compressedSize > channel.size()) {
+        throw invalid("the entry " + name + " is truncated");
+      }
+
+      int length = (int) Math.min(entry.size, maxLength);
+      if (entry.method == STORED) {
+        return readBytes(dataPosition, length).array();
+      } else if (entry.method != DEFLATED) {
+        throw invalid("the entry " + name + " uses unsupported compression method "
+            + entry.method);
+      }
+
+      int compressedLength = (int) Math.min(entry.compressedSize, MAX_ENTRY_SIZE);
+      // the inflater may need a byte past the end of the deflated data
+      byte[] compressed = new byte[compressedLength + 1];
+      readBytes(dataPosition, compressedLength).get(compressed, 0, compressedLength);
+      Inflater inflater = new Inflater(true);
+      try {
+        inflater.setInput(compressed);
+        byte[] contents = new byte[length];
+        int inflated = 0;
+        while (inflated < length) {
+          int count = inflater.inflate(contents, inflated, length - inflated);
+          if (count == 0 && (inflater.finished() || inflater.needsInput()
+              || inflater.needsDictionary())) {
+            break;
+          }
+          inflated += count;
+        }
+        if (inflated < length) {
+          throw invalid("the entry " + name + " is corrupt");
+        }
+        return contents;
+      } catch (DataFormatException e) {
+        throw invalid("the entry " + name + " is corrupt: " + e.getMessage());
+      } finally {
+        inflater.end();
+      }
+    }
+
+    private ByteBuffer readBytes(long position, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new EOFException(path + " ended unexpectedly");
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+
+    private ZipException invalid(String reason) {
+      return new ZipException(path + " is not a valid zip archive: " + reason);
+    }
+  }
+
+  private static class Entry {
+
+    private final int method;
+    private long compressedSize;
+    private long size;
+    private long localHeaderOffset;
+
+    private Entry(int method, long compressedSize, long size, long localHeaderOffset) {
+      this.method = method;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+  }
+
+}
@@ -18,39 +18,71 @@ package com.google.cloud.runtimes.builder.config.domain;
 
 import com.google.common.base.MoreObjects;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.jar.Attributes;
 
 public class Artifact {
 
+  // native-image reads the reflection, resource and proxy configuration of the class path here
+  private static final String NATIVE_IMAGE_CONFIG_DIR = "META-INF/native-image/";
+
   /**
    * Returns an {@link Artifact} of the appropriate type for the given path. If the artifact cannot
    * be identified, a {@code IllegalArgumentException} is thrown. The path need not point to an
    * existing file.
    */
   public static Artifact fromPath(Path path) {
+    return fromPath(path, Files::exists);
+  }
+
+  /**
+   * Returns an {@link Artifact} of the appropriate type for the given path, looking up its contents
+   * in the given {@link WorkspaceIndex}. If the artifact cannot be identified, a
+   * {@code IllegalArgumentException} is thrown.
+   */
+  public static Artifact fromPath(Path path, WorkspaceIndex workspaceIndex) {
+    return fromPath(path, workspaceIndex::exists);
+  }
+
+  private static Artifact fromPath(Path path, Predicate<Path> exists) {
+    return classify(path, exists)
+        .map(type -> new Artifact(type, path))
+        .orElseThrow(() -> new IllegalArgumentException("The file at path " + path + " is not a "
+            + "valid Java artifact. Expected a JAR, WAR, or exploded WAR artifact"));
+  }
+
+  private static Optional<ArtifactType> classify(Path path, Predicate<Path> exists) {
     String extension = com.google.common.io.Files.getFileExtension(path.toString());
 
-    if (Files.exists(path.resolve("WEB-INF"))) {
-      if (Files.exists(path.resolve("WEB-INF/appengine-web.xml"))) {
-        return new Artifact(ArtifactType.COMPAT_EXPLODED_WAR, path);
+    if (exists.test(path.resolve("WEB-INF"))) {
+      if (exists.test(path.resolve("WEB-INF/appengine-web.xml"))) {
+        return Optional.of(ArtifactType.COMPAT_EXPLODED_WAR);
       }
-      return new Artifact(ArtifactType.EXPLODED_WAR, path);
+      return Optional.of(ArtifactType.EXPLODED_WAR);
 
     } else if (extension.equalsIgnoreCase("war")) {
-      return new Artifact(ArtifactType.WAR, path);
+      return Optional.of(ArtifactType.WAR);
 
     } else if (extension.equalsIgnoreCase("jar")) {
-      return new Artifact(ArtifactType.JAR, path);
+      return Optional.of(ArtifactType.JAR);
 
     } else {
-      throw new IllegalArgumentException("The file at path " + path + " is not a valid Java "
-          + "artifact. Expected a JAR, WAR, or exploded WAR artifact");
+      return Optional.empty();
     }
   }
 
   private final Path path;
   private final ArtifactType type;
+  private ArchiveSummary archiveSummary;
 
   public Artifact(ArtifactType type, Path path) {
     this.path = path;
@@ -70,14 +102,111 @@ public class Artifact {
    * See also {@link Artifact#fromPath(Path)}.
    */
   public static boolean isAnArtifact(Path path) {
-    try {
-      // if this method doesn't throw an exception, it is a valid artifact
-      fromPath(path);
-      return true;
+    return isAnArtifact(path, Files::exists);
+  }
+
+  /**
+   * Returns true if the given path is a valid artifact, looking up its contents in the given
+   * {@link WorkspaceIndex}.
+   */
+  public static boolean isAnArtifact(Path path, WorkspaceIndex workspaceIndex) {
+    return isAnArtifact(path, workspaceIndex::exists);
+  }
+
+  private static boolean isAnArtifact(Path path, Predicate<Path> exists) {
+    return classify(path, exists).isPresent();
+  }
+
+  /**
+   * Returns the {@link ArchiveSummary} of a JAR or WAR artifact, reading it the first time that
+   * it's asked for.
+   *
+   * @throws IllegalStateException if the artifact isn't an archive
+   * @throws IOException if the archive can't be read or isn't a valid zip archive
+   */
+  public ArchiveSummary getArchiveSummary() throws IOException {
+    if (type != ArtifactType.JAR && type != ArtifactType.WAR) {
+      throw new IllegalStateException(path + " is not a JAR or WAR archive");
+    }
+    if (archiveSummary == null) {
+      archiveSummary = ArchiveSummary.read(path);
+    }
+    return archiveSummary;
+  }
 
-    } catch (IllegalArgumentException e) {
+  /**
+   * Returns the layers listed in the layer index of a Spring Boot JAR, ordered from the least to
+   * the most frequently changing, or an empty list if the artifact isn't an existing JAR with a
+   * layer index.
+   *
+   * @throws IOException if the JAR can't be read
+   */
+  public List<String> getBootLayers() throws IOException {
+    if (type != ArtifactType.JAR || !Files.isRegularFile(path)) {
+      return Collections.emptyList();
+    }
+    return getArchiveSummary().getBootLayers();
+  }
+
+  /**
+   * Returns the Main-Class declared in the manifest of an existing JAR.
+   *
+   * @throws IOException if the JAR can't be read
+   */
+  public Optional<String> getMainClass() throws IOException {
+    if (type != ArtifactType.JAR || !Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+    return getArchiveSummary().getMainClass();
+  }
+
+  /**
+   * Returns the libraries that the manifest Class-Path of an existing JAR refers to, as the
+   * directories that contain them or, for libraries next to the JAR, as the libraries themselves.
+   * Only entries that exist inside the JAR's directory are returned, in the order that they're
+   * first referenced.
+   *
+   * @throws IOException if the JAR can't be read
+   */
+  public List<Path> getClassPathLibraries() throws IOException {
+    if (type != ArtifactType.JAR || !Files.isRegularFile(path)) {
+      return Collections.emptyList();
+    }
+    Optional<String> classPath = getArchiveSummary()
+        .getManifestAttribute(Attributes.Name.CLASS_PATH.toString());
+    if (!classPath.isPresent()) {
+      return Collections.emptyList();
+    }
+
+    Path jarDir = path.toAbsolutePath().getParent();
+    Set<Path> libraries = new LinkedHashSet<>();
+    for (String entry : classPath.get().trim().split("\\s+")) {
+      // absolute paths and URLs aren't part of the artifact
+      if (entry.isEmpty() || entry.startsWith("/") || entry.contains(":")) {
+        continue;
+      }
+      Path library = jarDir.resolve(entry).normalize();
+      if (!library.startsWith(jarDir) || library.equals(jarDir) || !Files.exists(library)) {
+        continue;
+      }
+      libraries.add(library.getParent().equals(jarDir) ? library
+          : jarDir.resolve(jarDir.relativize(library).getName(0)));
+    }
+    return new ArrayList<>(libraries);
+  }
+
+  /**
+   * Returns true if an existing JAR contains configuration for GraalVM native-image, such as the
+   * reflection configuration, under META-INF/native-image.
+   *
+   * @throws IOException if the JAR can't be read
+   */
+  public boolean hasNativeImageConfig() throws IOException {
+    if (type != ArtifactType.JAR || !Files.isRegularFile(path)) {
       return false;
     }
+    return getArchiveSummary().getEntryNames().stream()
+        .anyMatch(name -> !name.endsWith("/") && name.startsWith(NATIVE_IMAGE_CONFIG_DIR));
   }
 
   public enum ArtifactType {
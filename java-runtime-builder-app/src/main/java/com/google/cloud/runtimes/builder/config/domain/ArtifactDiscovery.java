@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import com.google.cloud.runtimes.builder.buildcontext.DockerignoreMatcher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Discovers the JARs and WARs that a build has already written to the output directories of the
+ * projects in a workspace: target for maven, and build/libs for gradle. The output directories
+ * are walked in parallel on the common fork/join pool, to a bounded depth and number of entries,
+ * so that discovery stays fast on workspaces with a very large number of files. Directories of
+ * classes, reports and copied dependencies are not walked, and neither are the files and
+ * directories that the workspace's .dockerignore excludes, which can't be copied into the image.
+ */
+public class ArtifactDiscovery {
+
+  private static final Logger logger = LoggerFactory.getLogger(ArtifactDiscovery.class);
+
+  // the directories, relative to a project, where maven and gradle write the artifacts they build
+  private static final List<String> OUTPUT_DIRS = ImmutableList.of("target", "build/libs");
+  private static final Set<String> SKIPPED_DIRS = ImmutableSet.of("classes", "test-classes",
+      "generated-sources", "generated-test-sources", "maven-status", "maven-archiver",
+      "surefire-reports", "failsafe-reports", "test-results", "reports", "tmp", "dependency",
+      "lib", "libs");
+  // the suffixes of the secondary artifacts that are built alongside the deployable one
+  private static final List<String> SECONDARY_SUFFIXES = ImmutableList.of("-sources", "-javadoc",
+      "-tests", "-test-sources", "-plain");
+  // the prefix of the original JAR that the shade plugin replaces
+  private static final String SHADED_ORIGINAL_PREFIX = "original-";
+  private static final int MAX_DEPTH = 3;
+  private static final int MAX_ENTRIES = 10000;
+
+  private ArtifactDiscovery() {
+  }
+
+  /**
+   * Returns the absolute paths of the artifacts in the output directories of the workspace's
+   * projects, ranked from the most to the least likely to be the one to deploy: those of the
+   * outermost project first, then by path.
+   */
+  public static List<Path> discover(WorkspaceIndex workspaceIndex) {
+    return discover(workspaceIndex, new DockerignoreMatcher(Collections.emptyList()));
+  }
+
+  /**
+   * Returns the absolute paths of the artifacts in the output directories of the workspace's
+   * projects that the given .dockerignore rules don't exclude, ranked as by
+   * {@link #discover(WorkspaceIndex)}.
+   */
+  public static List<Path> discover(WorkspaceIndex workspaceIndex,
+      DockerignoreMatcher dockerignore) {
+    return discover(workspaceIndex, dockerignore, MAX_DEPTH, MAX_ENTRIES);
+  }
+
+  static List<Path> discover(WorkspaceIndex workspaceIndex, DockerignoreMatcher dockerignore,
+      int maxDepth, int maxEntries) {
+    Path workspaceDir = workspaceIndex.getWorkspaceDir();
+    AtomicInteger remainingEntries = new AtomicInteger(maxEntries);
+    List<ForkJoinTask<List<Path>>> walks = getOutputDirs(workspaceIndex, dockerignore).stream()
+        .map(dir -> ForkJoinPool.commonPool()
+            .submit(new WalkTask(workspaceDir, dir, 1, maxDepth, dockerignore,
+                remainingEntries)))
+        .collect(Collectors.toList());
+
+    List<Path> artifacts = new ArrayList<>();
+    for (ForkJoinTask<List<Path>> walk : walks) {
+      artifacts.addAll(walk.join());
+    }
+    if (remainingEntries.get() < 0) {
+      logger.warn("Stopped looking for artifacts in the output directories after {} entries. Set "
+          + "runtime_config.artifact to the artifact to deploy.", maxEntries);
+    }
+
+    return artifacts.stream()
+        .sorted(Comparator.comparing((Path artifact) -> getRank(workspaceDir, artifact))
+            .thenComparing(Path::toString))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the artifacts of the given ranked list that are as likely to be the one to deploy as
+   * the first of them, which are only told apart by their paths.
+   */
+  public static List<Path> getTopRanked(Path workspaceDir, List<Path> artifacts) {
+    if (artifacts.isEmpty()) {
+      return artifacts;
+    }
+    int topRank = getRank(workspaceDir, artifacts.get(0));
+    return artifacts.stream()
+        .filter(artifact -> getRank(workspaceDir, artifact) == topRank)
+        .collect(Collectors.toList());
+  }
+
+  /*
+   * The artifacts of outer projects, whose paths have fewer segments, rank first.
+   */
+  private static int getRank(Path workspaceDir, Path artifact) {
+    return workspaceDir.relativize(artifact).getNameCount();
+  }
+
+  /*
+   * Returns the existing output directories of the workspace's root and of the projects whose
+   * build files are in the index, outermost first.
+   */
+  private static List<Path> getOutputDirs(WorkspaceIndex workspaceIndex,
+      DockerignoreMatcher dockerignore) {
+    Set<Path> projectDirs = new LinkedHashSet<>();
+    projectDirs.add(Paths.get(""));
+    for (BuildTool buildTool : BuildTool.values()) {
+      for (Path buildFile : workspaceIndex.findBuildFiles(buildTool)) {
+        projectDirs.add(buildFile.getParent() == null ? Paths.get("") : buildFile.getParent());
+      }
+    }
+
+    List<Path> outputDirs = new ArrayList<>();
+    for (Path projectDir : projectDirs) {
+      for (String outputDir : OUTPUT_DIRS) {
+        Path dir = workspaceIndex.getWorkspaceDir().resolve(projectDir).resolve(outputDir);
+        if (Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)
+            && isWalked(dockerignore, projectDir.resolve(outputDir))) {
+          outputDirs.add(dir);
+        }
+      }
+    }
+    return outputDirs;
+  }
+
+  /*
+   * Returns true unless the directory at the given workspace-relative path is excluded, and no
+   * exception of the .dockerignore may include files from under it again.
+   */
+  private static boolean isWalked(DockerignoreMatcher dockerignore, Path relativeDir) {
+    String dir = toDockerignorePath(relativeDir);
+    return !dockerignore.isExcluded(dir) || dockerignore.mayIncludeUnder(dir);
+  }
+
+  private static String toDockerignorePath(Path relativePath) {
+    return relativePath.toString().replace('\\', '/');
+  }
+
+  private static boolean isCandidate(String fileName) {
+    String extension = com.google.common.io.Files.getFileExtension(fileName);
+    if (!extension.equalsIgnoreCase("jar") && !extension.equalsIgnoreCase("war")) {
+      return false;
+    }
+    String baseName = com.google.common.io.Files.getNameWithoutExtension(fileName);
+    return !baseName.startsWith(SHADED_ORIGINAL_PREFIX)
+        && SECONDARY_SUFFIXES.stream().noneMatch(baseName::endsWith);
+  }
+
+  /*
+   * Lists the candidate artifacts in a directory, and walks its subdirectories in parallel.
+   */
+  private static class WalkTask extends RecursiveTask<List<Path>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Path workspaceDir;
+    private final Path dir;
+    private final int depth;
+    private final int maxDepth;
+    private final DockerignoreMatcher dockerignore;
+    // shared by all the tasks of a discovery, which stop listing entries once it's negative
+    private final AtomicInteger remainingEntries;
+
+    private WalkTask(Path workspaceDir, Path dir, int depth, int maxDepth,
+        DockerignoreMatcher dockerignore, AtomicInteger remainingEntries) {
+      this.workspaceDir = workspaceDir;
+      this.dir = dir;
+      this.depth = depth;
+      this.maxDepth = maxDepth;
+      this.dockerignore = dockerignore;
+      this.remainingEntries = remainingEntries;
+    }
+
+    @Override
+    protected List<Path> compute() {
+      List<Path> artifacts = new ArrayList<>();
+      List<WalkTask> subtasks = new ArrayList<>();
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+        for (Path entry : entries) {
+          if (remainingEntries.decrementAndGet() < 0) {
+            break;
+          }
+          String name = entry.getFileName().toString();
+          BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+              LinkOption.NOFOLLOW_LINKS);
+          Path relativeEntry = workspaceDir.relativize(entry);
+          if (attrs.isRegularFile()) {
+            if (isCandidate(name)
+                && !dockerignore.isExcluded(toDockerignorePath(relativeEntry))) {
+              artifacts.add(entry);
+            }
+          } else if (attrs.isDirectory() && depth < maxDepth && !name.startsWith(".")
+              && !SKIPPED_DIRS.contains(name)
+              // the packaged WAR is deployed rather than the directory it was assembled in
+              && !Files.exists(entry.resolve("WEB-INF"))
+              && isWalked(dockerignore, relativeEntry)) {
+            subtasks.add(new WalkTask(workspaceDir, entry, depth + 1, maxDepth, dockerignore,
+                remainingEntries));
+          }
+        }
+      } catch (IOException e) {
+        logger.warn("Unable to look for artifacts in {}", dir, e);
+      }
+
+      for (WalkTask subtask : invokeAll(subtasks)) {
+        artifacts.addAll(subtask.join());
+      }
+      return artifacts;
+    }
+  }
+
+}
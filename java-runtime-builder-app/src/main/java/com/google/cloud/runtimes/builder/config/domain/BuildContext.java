@@ -20,6 +20,8 @@ import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.WRITE;
 
+import com.google.cloud.runtimes.builder.dockerfile.Dockerfile;
+import com.google.cloud.runtimes.builder.dockerfile.DockerfileOptimizer;
 import com.google.cloud.runtimes.builder.injection.DisableSourceBuild;
 import com.google.cloud.runtimes.builder.util.StringLineAppender;
 import com.google.common.annotations.VisibleForTesting;
@@ -37,7 +39,8 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -59,11 +62,14 @@ public class BuildContext {
 
   private final AppYaml appYaml;
   private final Path workspaceDir;
-  private final StringLineAppender dockerfile;
+  private final Dockerfile dockerfile;
   private final StringLineAppender dockerignore;
   private final boolean disableSourceBuild;
 
   private Optional<Path> buildArtifactLocation;
+  private Optional<Artifact> deployedArtifact;
+  private Optional<String> runtimeImage;
+  private WorkspaceIndex workspaceIndex;
 
   /**
    * Constructs a new {@link BuildContext}.
@@ -80,12 +86,14 @@ public class BuildContext {
 
     this.appYaml = appYaml;
     this.workspaceDir = workspaceDir;
-    this.dockerfile = new StringLineAppender();
+    this.dockerfile = new Dockerfile();
     // dockerignore should always include itself and the dockerfile
     this.dockerignore = new StringLineAppender(DOCKERFILE_NAME, DOCKERIGNORE_NAME);
     this.disableSourceBuild = disableSourceBuild;
 
     buildArtifactLocation = Optional.empty();
+    deployedArtifact = Optional.empty();
+    runtimeImage = Optional.empty();
   }
 
   public RuntimeConfig getRuntimeConfig() {
@@ -96,7 +104,18 @@ public class BuildContext {
     return workspaceDir;
   }
 
-  public StringLineAppender getDockerfile() {
+  /**
+   * Returns the index of the workspace's contents, which lists each directory the first time that
+   * it's queried.
+   */
+  public WorkspaceIndex getWorkspaceIndex() {
+    if (workspaceIndex == null) {
+      workspaceIndex = WorkspaceIndex.build(workspaceDir);
+    }
+    return workspaceIndex;
+  }
+
+  public Dockerfile getDockerfile() {
     return dockerfile;
   }
 
@@ -112,17 +131,35 @@ public class BuildContext {
     this.buildArtifactLocation = buildArtifactLocation;
   }
 
+  /**
+   * Returns the artifact that the runtime image is built from, once it has been selected.
+   */
+  public Optional<Artifact> getDeployedArtifact() {
+    return deployedArtifact;
+  }
+
+  public void setDeployedArtifact(Optional<Artifact> deployedArtifact) {
+    this.deployedArtifact = deployedArtifact;
+  }
+
+  /**
+   * Returns the base image of the runtime image, once it has been selected.
+   */
+  public Optional<String> getRuntimeImage() {
+    return runtimeImage;
+  }
+
+  public void setRuntimeImage(Optional<String> runtimeImage) {
+    this.runtimeImage = runtimeImage;
+  }
+
   /**
    * Returns true if this is a build from source that requires compilation or some other build step
    * to generate a build artifact, false if otherwise.
    */
   public boolean isSourceBuild() {
-    try {
-      return !disableSourceBuild && (!Strings.isNullOrEmpty(
-          appYaml.getRuntimeConfig().getBuildScript()) || getBuildTool().isPresent());
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    return !disableSourceBuild && (!Strings.isNullOrEmpty(
+        appYaml.getRuntimeConfig().getBuildScript()) || getBuildTool().isPresent());
   }
 
   /**
@@ -134,6 +171,20 @@ public class BuildContext {
     return appYaml.getBetaSettings().isEnableAppEngineApis();
   }
 
+  /**
+   * Returns the size of each instance, if app.yaml sets it.
+   */
+  public Optional<Resources> getResources() {
+    return Optional.ofNullable(appYaml.getResources());
+  }
+
+  /**
+   * Returns true if a fixed number of instances is run, rather than scaling them automatically.
+   */
+  public boolean isManualScaling() {
+    return appYaml.getManualScaling() != null;
+  }
+
   /**
    * Writes the contents of Dockerfile and .dockerignore buffers to files. If a .dockerignore file
    * already exists, the .dockerignore buffer will be appended to it.
@@ -148,7 +199,7 @@ public class BuildContext {
   private void writeDockerFile() throws IOException {
     // fail loudly if a Dockerfile already exists
     for (String dir : EXISITING_DOCKER_PATHS) {
-      if (Files.exists(workspaceDir.resolve(dir))) {
+      if (getWorkspaceIndex().exists(dir)) {
         throw new IllegalStateException("Custom Dockerfiles aren't supported. If you wish to use a "
             + "custom Dockerfile, consider using runtime: custom. Otherwise, remove the Dockerfile "
             + (dir.equals(DOCKERFILE_NAME) ? "from the root" : "at " + dir) + " to continue.");
@@ -157,6 +208,10 @@ public class BuildContext {
 
     Path dockerFilePath = workspaceDir.resolve(DOCKERFILE_NAME);
 
+    if (getRuntimeConfig().getOptimizeDockerfile()) {
+      new DockerfileOptimizer().optimize(dockerfile);
+    }
+
     // write Dockerfile
     logger.info("Generating Dockerfile at {}", dockerFilePath);
     try (BufferedWriter writer = Files.newBufferedWriter(dockerFilePath)) {
@@ -170,20 +225,20 @@ public class BuildContext {
       return;
     }
 
-    Path dockerIgnorePath = workspaceDir.resolve(DOCKERIGNORE_NAME);
-    Set<String> existingDockerignoreLines = new HashSet<>();
-
     // Read the contents of an existing .dockerignore file to avoid duplicating lines
-    if (Files.exists(dockerIgnorePath)) {
-      try (BufferedReader reader = Files.newBufferedReader(dockerIgnorePath)) {
-        reader.lines().forEach(existingDockerignoreLines::add);
+    Set<String> existingDockerignoreLines = new HashSet<>(getExistingDockerignoreLines());
+
+    // Filter out lines that are already present. Once a line re-includes files, later lines
+    // override it, so they're kept even if they repeat an existing line.
+    List<String> lines = new ArrayList<>();
+    boolean reincluded = false;
+    for (String line : dockerignore.getLines()) {
+      if (reincluded || !existingDockerignoreLines.contains(line)) {
+        lines.add(line);
       }
+      reincluded |= line.startsWith("!");
     }
-
-    // Filter out lines that are already present
-    dockerignore.setLines(dockerignore.getLines().stream()
-        .filter(line -> !existingDockerignoreLines.contains(line))
-        .collect(Collectors.toList()));
+    dockerignore.setLines(lines);
 
     // Make sure there are lines remaining before proceeding
     if (dockerignore.getLines().size() < 1) {
@@ -191,6 +246,7 @@ public class BuildContext {
     }
 
     // Write the dockerignore file
+    Path dockerIgnorePath = workspaceDir.resolve(DOCKERIGNORE_NAME);
     logger.info("Generating .dockerignore file at {}", dockerIgnorePath);
     try (BufferedWriter writer
         = Files.newBufferedWriter(dockerIgnorePath, CREATE, WRITE, APPEND)) {
@@ -200,16 +256,36 @@ public class BuildContext {
     }
   }
 
+  /**
+   * Returns the lines of the .dockerignore file that already exists in the workspace, or an empty
+   * list if there isn't one.
+   */
+  public List<String> getExistingDockerignoreLines() throws IOException {
+    Path dockerIgnorePath = workspaceDir.resolve(DOCKERIGNORE_NAME);
+    if (!getWorkspaceIndex().exists(DOCKERIGNORE_NAME)) {
+      return Collections.emptyList();
+    }
+    try (BufferedReader reader = Files.newBufferedReader(dockerIgnorePath)) {
+      return reader.lines().collect(Collectors.toList());
+    }
+  }
+
   /**
    * Finds the build tool that should be used to build the source directory, if any.
    */
-  public Optional<BuildTool> getBuildTool() throws IOException {
-    return Files.list(workspaceDir)
-        .filter((path) -> Files.isRegularFile(path))
-        .filter(BuildTool::isABuildFile)
-        // sort based on natural ordering of BuildTool for each path
-        .sorted(Comparator.comparing(BuildTool::getForBuildFile))
-        .findFirst()
-        .map(BuildTool::getForBuildFile);
+  public Optional<BuildTool> getBuildTool() {
+    return getWorkspaceIndex().getBuildTool();
+  }
+
+  /**
+   * Finds the build files of the given {@link BuildTool} anywhere in the workspace, so that
+   * multi-module projects can be described by their build files alone. Hidden directories and
+   * the build tools' output directories are not searched.
+   *
+   * @return workspace-relative paths to the build files, with parent projects ordered before their
+   *     modules
+   */
+  public List<Path> findBuildFiles(BuildTool buildTool) {
+    return getWorkspaceIndex().findBuildFiles(buildTool);
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Enum that represents how a build tool is tuned when building from source.
+ */
+public enum BuildProfile {
+  /**
+   * Builds the way the build tool does out of the box, skipping only the tests.
+   */
+  DEFAULT,
+  /**
+   * Builds in parallel and skips everything that doesn't contribute to the deployed artifact.
+   */
+  PERFORMANCE;
+
+  /**
+   * Looks up the {@link BuildProfile} for the value of the runtime_config.build_profile setting.
+   * If the setting is {@code null}, {@link #DEFAULT} is returned.
+   */
+  public static BuildProfile fromSetting(String setting) {
+    if (setting == null) {
+      return DEFAULT;
+    }
+    for (BuildProfile buildProfile : values()) {
+      if (buildProfile.name().equalsIgnoreCase(setting)) {
+        return buildProfile;
+      }
+    }
+    throw new IllegalArgumentException(String.format("Invalid runtime_config.build_profile '%s'. "
+        + "Please use one of: %s", setting, Arrays.stream(values())
+        .map(buildProfile -> buildProfile.name().toLowerCase())
+        .collect(Collectors.joining(", "))));
+  }
+}
@@ -24,16 +24,47 @@ import java.util.Map;
  * Enum that represents a Java build tool.
  */
 public enum BuildTool {
-  MAVEN, GRADLE;
+  MAVEN("pom.xml", "target", null),
+  GRADLE("build.gradle", "build", "settings.gradle");
 
   private static final Map<String, BuildTool> BUILD_FILENAME_TO_BUILD_TOOL = new HashMap<>();
   static {
-    BUILD_FILENAME_TO_BUILD_TOOL.put("pom.xml", MAVEN);
-    BUILD_FILENAME_TO_BUILD_TOOL.put("build.gradle", GRADLE);
+    for (BuildTool buildTool : values()) {
+      BUILD_FILENAME_TO_BUILD_TOOL.put(buildTool.buildFileName, buildTool);
+      if (buildTool.settingsFileName != null) {
+        BUILD_FILENAME_TO_BUILD_TOOL.put(buildTool.settingsFileName, buildTool);
+      }
+    }
+  }
+
+  private final String buildFileName;
+  private final String outputDirName;
+  // declares the projects of a multi-project build, and may be its only build file at the root
+  private final String settingsFileName;
+
+  BuildTool(String buildFileName, String outputDirName, String settingsFileName) {
+    this.buildFileName = buildFileName;
+    this.outputDirName = outputDirName;
+    this.settingsFileName = settingsFileName;
+  }
+
+  /**
+   * Returns the name of the file that declares a project for this build tool.
+   */
+  public String getBuildFileName() {
+    return buildFileName;
+  }
+
+  /**
+   * Returns the name of the directory, relative to a project, where this build tool writes its
+   * outputs.
+   */
+  public String getOutputDirName() {
+    return outputDirName;
   }
 
   /**
-   * Looks up the {@link BuildTool} associated with the given build file.
+   * Looks up the {@link BuildTool} associated with the given build or settings file.
    */
   public static BuildTool getForBuildFile(Path buildFilePath) {
     String fileName = buildFilePath.getFileName().toString();
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Pins the images that the builder maps to, which are usually referred to by mutable tags, to the
+ * digests recorded in a lockfile. Each line of the lockfile is formatted as IMAGE=DIGEST, such as
+ * gcr.io/google-appengine/openjdk:8=sha256:..., and lines starting with # are ignored.
+ */
+public class ImageLockfile {
+
+  private static final Logger logger = LoggerFactory.getLogger(ImageLockfile.class);
+
+  private static final Pattern DIGEST = Pattern.compile("sha256:[0-9a-f]{64}");
+  private static final String COMMENT = "#";
+
+  private final Map<String, String> digests;
+
+  /**
+   * Constructs a new {@link ImageLockfile}.
+   *
+   * @param digests maps image names, as they appear in the runtime maps, to sha256 digests
+   */
+  public ImageLockfile(Map<String, String> digests) {
+    digests.forEach((image, digest) -> {
+      if (!DIGEST.matcher(digest).matches()) {
+        throw new IllegalArgumentException("Invalid digest '" + digest + "' for image '" + image
+            + "'. All digests in the image lockfile must be formatted as: sha256:<64 hex digits>");
+      }
+    });
+    this.digests = ImmutableMap.copyOf(digests);
+  }
+
+  /**
+   * Returns a lockfile that pins no images.
+   */
+  public static ImageLockfile empty() {
+    return new ImageLockfile(ImmutableMap.of());
+  }
+
+  /**
+   * Reads a lockfile.
+   *
+   * @param path the path of the lockfile
+   * @throws IOException if the lockfile can't be read
+   */
+  public static ImageLockfile load(Path path) throws IOException {
+    List<String> lines = Files.readAllLines(path);
+    Map<String, String> digests = new LinkedHashMap<>();
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith(COMMENT)) {
+        continue;
+      }
+      String[] split = trimmed.split("=");
+      if (split.length != 2) {
+        throw new IllegalArgumentException("Invalid image lockfile entry: '" + line + "'. "
+            + "All entries must be formatted as: IMAGE=DIGEST");
+      }
+      digests.put(split[0].trim(), split[1].trim());
+    }
+    logger.info("Loaded {} image digests from {}", digests.size(), path);
+    return new ImageLockfile(digests);
+  }
+
+  /**
+   * Returns the image pinned to its digest, such as gcr.io/google-appengine/openjdk:8@sha256:...
+   * The tag is kept for readability, and is ignored by docker once a digest is given. Images that
+   * already have a digest, or that aren't in the lockfile, are returned unchanged.
+   */
+  public String pin(String image) {
+    if (image.contains("@")) {
+      return image;
+    }
+    String digest = digests.get(image);
+    if (digest == null) {
+      if (!digests.isEmpty()) {
+        logger.warn("No digest for image '{}' was found in the image lockfile. Its tag will be "
+            + "resolved when the image is built.", image);
+      }
+      return image;
+    }
+    return image + "@" + digest;
+  }
+
+}
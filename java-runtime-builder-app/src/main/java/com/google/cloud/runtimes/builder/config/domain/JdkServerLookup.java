@@ -18,19 +18,34 @@ package com.google.cloud.runtimes.builder.config.domain;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class JdkServerLookup {
 
   public static final String KEY_WILDCARD = "*";
   public static final String KEY_DELIMITER = "|";
+  // keys of the jdk runtime map that select the images of native and jlink builds, rather than a
+  // jdk
+  public static final String NATIVE_KEY = "native";
+  public static final String NATIVE_BUILD_KEY = "native-build";
+  public static final String JLINK_KEY = "jlink";
+  private static final Set<String> RESERVED_KEYS =
+      ImmutableSet.of(NATIVE_KEY, NATIVE_BUILD_KEY, JLINK_KEY);
 
   private static final String KEY_DELIMITER_REGEX = "\\" + KEY_DELIMITER;
+  // the major version at the start of an image tag, such as 11 in openjdk:11-jre
+  private static final Pattern IMAGE_TAG_VERSION = Pattern.compile("^(?:1\\.)?(\\d+)");
+  // the major version at the end of a jdk name, such as 11 in openjdk11
+  private static final Pattern JDK_NAME_VERSION = Pattern.compile("(\\d+)$");
 
   private Map<String, String> serverRuntimeMap;
   private Map<String, String> jdkRuntimeMap;
@@ -43,18 +58,34 @@ public class JdkServerLookup {
    * @param serverRuntimeMap maps server and jdk config names to runtime images
    */
   public JdkServerLookup(String[] jdkRuntimeMap, String[] serverRuntimeMap) {
+    this(jdkRuntimeMap, serverRuntimeMap, ImageLockfile.empty());
+  }
+
+  /**
+   * Constructs a new {@link JdkServerLookup}, with the mapped images pinned to the digests in the
+   * given lockfile. Validates for wildcard defaults existing.
+   *
+   * @param jdkRuntimeMap maps jdk config names to runtime images
+   * @param serverRuntimeMap maps server and jdk config names to runtime images
+   * @param imageLockfile the digests of the mapped images
+   */
+  public JdkServerLookup(String[] jdkRuntimeMap, String[] serverRuntimeMap,
+      ImageLockfile imageLockfile) {
     Preconditions.checkNotNull(jdkRuntimeMap);
     Preconditions.checkNotNull(serverRuntimeMap);
+    Preconditions.checkNotNull(imageLockfile);
 
     this.jdkRuntimeMap = getSettingsMap(jdkRuntimeMap, false);
     this.serverRuntimeMap = getSettingsMap(serverRuntimeMap, true);
+    this.jdkRuntimeMap.replaceAll((key, image) -> imageLockfile.pin(image));
+    this.serverRuntimeMap.replaceAll((key, image) -> imageLockfile.pin(image));
 
     validate();
   }
 
   private static Map<String, String> getSettingsMap(String[] rawSettings, boolean server) {
     if (rawSettings == null) {
-      return Collections.emptyMap();
+      return new HashMap<>();
     }
     return Arrays.stream(rawSettings)
         .map(s -> {
@@ -78,7 +109,7 @@ public class JdkServerLookup {
         })
         .collect(Collectors
             .toMap(a -> a[0].replaceAll("\\s+", ""), a -> a[1].replaceAll("\\s+", ""),
-                (original, duplicate) -> original));
+                (original, duplicate) -> original, HashMap::new));
   }
 
   private void validate() {
@@ -109,6 +140,7 @@ public class JdkServerLookup {
     return this.jdkRuntimeMap.keySet()
         .stream()
         .filter((key) -> !key.contains(KEY_WILDCARD))
+        .filter((key) -> !RESERVED_KEYS.contains(key))
         .map(key -> "'" + key + "'")
         .collect(Collectors.toSet());
   }
@@ -137,6 +169,8 @@ public class JdkServerLookup {
     String image;
     if (jdk == null) {
       image = this.jdkRuntimeMap.get(KEY_WILDCARD);
+    } else if (RESERVED_KEYS.contains(jdk)) {
+      image = null;
     } else {
       image = this.jdkRuntimeMap.get(jdk);
     }
@@ -151,6 +185,39 @@ public class JdkServerLookup {
     return image;
   }
 
+  /**
+   * Lookup the minimal base image that native executables are deployed on. If no image is mapped
+   * to the {@value #NATIVE_KEY} key, an {@link IllegalArgumentException} will be thrown.
+   */
+  public String lookupNativeImage() {
+    return lookupReservedKey(NATIVE_KEY, "native_image");
+  }
+
+  /**
+   * Lookup the image that provides the native-image tool for native builds. If no image is mapped
+   * to the {@value #NATIVE_BUILD_KEY} key, an {@link IllegalArgumentException} will be thrown.
+   */
+  public String lookupNativeBuildImage() {
+    return lookupReservedKey(NATIVE_BUILD_KEY, "native_image");
+  }
+
+  /**
+   * Lookup the minimal base image that a JRE built by jlink is deployed on. If no image is mapped
+   * to the {@value #JLINK_KEY} key, an {@link IllegalArgumentException} will be thrown.
+   */
+  public String lookupJlinkImage() {
+    return lookupReservedKey(JLINK_KEY, "jlink");
+  }
+
+  private String lookupReservedKey(String key, String setting) {
+    String image = this.jdkRuntimeMap.get(key);
+    if (image == null) {
+      throw new IllegalArgumentException(String.format("runtime_config.%s is set, but no image is "
+          + "mapped to the '%s' key of the JDK runtime map.", setting, key));
+    }
+    return image;
+  }
+
   /**
    * Lookup a server image for the given JDK name and server type.
    *
@@ -174,4 +241,27 @@ public class JdkServerLookup {
 
     return image;
   }
+
+  /**
+   * Returns the major Java version of a runtime image, from its tag, or else from the name of the
+   * runtime_config.jdk setting that selected it.
+   */
+  public static Optional<Integer> getJavaVersion(String image, String jdk) {
+    String name = image.split("@")[0];
+    int tagIndex = name.lastIndexOf(':');
+    if (tagIndex > name.lastIndexOf('/')) {
+      Matcher matcher = IMAGE_TAG_VERSION.matcher(name.substring(tagIndex + 1));
+      if (matcher.find()) {
+        return Optional.of(Integer.parseInt(matcher.group(1)));
+      }
+    }
+    if (jdk != null) {
+      Matcher matcher = JDK_NAME_VERSION.matcher(jdk);
+      if (matcher.find()) {
+        return Optional.of(Integer.parseInt(matcher.group(1)));
+      }
+    }
+    return Optional.empty();
+  }
+
 }
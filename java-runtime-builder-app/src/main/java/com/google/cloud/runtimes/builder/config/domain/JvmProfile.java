@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Enum that represents what the garbage collector of a runtime image is tuned for, on instances
+ * with enough CPUs for a collector that runs in parallel.
+ */
+public enum JvmProfile {
+  /**
+   * Keeps garbage collection pauses short, for services that respond to requests.
+   */
+  LATENCY("-XX:+UseG1GC"),
+  /**
+   * Spends the least time collecting garbage overall, at the cost of longer pauses, for services
+   * that process work in the background.
+   */
+  THROUGHPUT("-XX:+UseParallelGC");
+
+  private final String gcOption;
+
+  JvmProfile(String gcOption) {
+    this.gcOption = gcOption;
+  }
+
+  /**
+   * Returns the JVM option that selects the garbage collector of this profile.
+   */
+  public String getGcOption() {
+    return gcOption;
+  }
+
+  /**
+   * Looks up the {@link JvmProfile} for the value of the runtime_config.jvm_profile setting.
+   */
+  public static JvmProfile fromSetting(String setting) {
+    for (JvmProfile jvmProfile : values()) {
+      if (jvmProfile.name().equalsIgnoreCase(setting)) {
+        return jvmProfile;
+      }
+    }
+    throw new IllegalArgumentException(String.format("Invalid runtime_config.jvm_profile '%s'. "
+        + "Please use one of: %s", setting, Arrays.stream(values())
+        .map(jvmProfile -> jvmProfile.name().toLowerCase())
+        .collect(Collectors.joining(", "))));
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The manual_scaling section of app.yaml, which runs a fixed number of instances instead of
+ * scaling them with the load.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ManualScaling {
+
+  private int instances = 1;
+
+  public int getInstances() {
+    return instances;
+  }
+
+  @JsonProperty("instances")
+  public void setInstances(int instances) {
+    this.instances = instances;
+  }
+}
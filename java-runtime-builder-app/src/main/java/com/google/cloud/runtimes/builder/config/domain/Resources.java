@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The resources section of app.yaml, which sets the size of each instance. Settings that are left
+ * out default to the size of an App Engine flexible instance.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Resources {
+
+  private double cpu = 1;
+  private double memoryGb = 0.6;
+
+  public double getCpu() {
+    return cpu;
+  }
+
+  @JsonProperty("cpu")
+  public void setCpu(double cpu) {
+    this.cpu = cpu;
+  }
+
+  public double getMemoryGb() {
+    return memoryGb;
+  }
+
+  @JsonProperty("memory_gb")
+  public void setMemoryGb(double memoryGb) {
+    this.memoryGb = memoryGb;
+  }
+}
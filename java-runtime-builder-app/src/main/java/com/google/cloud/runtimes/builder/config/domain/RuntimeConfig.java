@@ -23,7 +23,26 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public final class RuntimeConfig extends OverrideableSetting {
 
   private static final String BUILD_SCRIPT_SETTING_NAME = "build_script";
+  private static final String BUILD_SCRIPT_INPUTS_SETTING_NAME = "build_script_inputs";
+  private static final String BUILD_SCRIPT_PREFETCH_SETTING_NAME = "build_script_prefetch";
   private static final String JETTY_QUICKSTART_SETTING_NAME = "jetty_quickstart";
+  private static final String CACHE_DEPENDENCIES_SETTING_NAME = "cache_dependencies";
+  private static final String GRADLE_TASK_SETTING_NAME = "gradle_task";
+  private static final String BUILD_PROFILE_SETTING_NAME = "build_profile";
+  private static final String GRADLE_PARALLEL_SETTING_NAME = "gradle_parallel";
+  private static final String GRADLE_BUILD_CACHE_SETTING_NAME = "gradle_build_cache";
+  private static final String GRADLE_CONFIGURATION_CACHE_SETTING_NAME
+      = "gradle_configuration_cache";
+  private static final String PRUNE_BUILD_CONTEXT_SETTING_NAME = "prune_build_context";
+  private static final String DOCKERIGNORE_ALLOWLIST_SETTING_NAME = "dockerignore_allowlist";
+  private static final String SPLIT_WAR_LAYERS_SETTING_NAME = "split_war_layers";
+  private static final String EXPLODE_WAR_SETTING_NAME = "explode_war";
+  private static final String APP_CDS_SETTING_NAME = "app_cds";
+  private static final String NATIVE_IMAGE_SETTING_NAME = "native_image";
+  private static final String JLINK_SETTING_NAME = "jlink";
+  private static final String JVM_PROFILE_SETTING_NAME = "jvm_profile";
+  private static final String BUILD_CONTEXT_BUDGET_SETTING_NAME = "build_context_budget";
+  private static final String OPTIMIZE_DOCKERFILE_SETTING_NAME = "optimize_dockerfile";
 
   @OverrideSetting
   private String jdk;
@@ -34,12 +53,69 @@ public final class RuntimeConfig extends OverrideableSetting {
   @OverrideSetting(BUILD_SCRIPT_SETTING_NAME)
   private String buildScript;
 
+  // whitespace separated paths, relative to the workspace
+  @OverrideSetting(BUILD_SCRIPT_INPUTS_SETTING_NAME)
+  private String buildScriptInputs;
+
+  @OverrideSetting(BUILD_SCRIPT_PREFETCH_SETTING_NAME)
+  private String buildScriptPrefetch;
+
   @OverrideSetting
   private String artifact;
 
   @OverrideSetting(JETTY_QUICKSTART_SETTING_NAME)
   private boolean jettyQuickstart;
 
+  @OverrideSetting(CACHE_DEPENDENCIES_SETTING_NAME)
+  private boolean cacheDependencies;
+
+  @OverrideSetting(GRADLE_TASK_SETTING_NAME)
+  private String gradleTask;
+
+  @OverrideSetting(BUILD_PROFILE_SETTING_NAME)
+  private String buildProfile;
+
+  // null if the default for the build profile should be used
+  @OverrideSetting(GRADLE_PARALLEL_SETTING_NAME)
+  private Boolean gradleParallel;
+
+  @OverrideSetting(GRADLE_BUILD_CACHE_SETTING_NAME)
+  private Boolean gradleBuildCache;
+
+  @OverrideSetting(GRADLE_CONFIGURATION_CACHE_SETTING_NAME)
+  private Boolean gradleConfigurationCache;
+
+  // null if not set, which doesn't prune, so that it can be turned off from the command line
+  @OverrideSetting(PRUNE_BUILD_CONTEXT_SETTING_NAME)
+  private Boolean pruneBuildContext;
+
+  @OverrideSetting(DOCKERIGNORE_ALLOWLIST_SETTING_NAME)
+  private boolean dockerignoreAllowlist;
+
+  @OverrideSetting(SPLIT_WAR_LAYERS_SETTING_NAME)
+  private boolean splitWarLayers;
+
+  @OverrideSetting(EXPLODE_WAR_SETTING_NAME)
+  private boolean explodeWar;
+
+  @OverrideSetting(APP_CDS_SETTING_NAME)
+  private boolean appCds;
+
+  @OverrideSetting(NATIVE_IMAGE_SETTING_NAME)
+  private boolean nativeImage;
+
+  @OverrideSetting(JLINK_SETTING_NAME)
+  private boolean jlink;
+
+  @OverrideSetting(JVM_PROFILE_SETTING_NAME)
+  private String jvmProfile;
+
+  @OverrideSetting(BUILD_CONTEXT_BUDGET_SETTING_NAME)
+  private String buildContextBudget;
+
+  @OverrideSetting(OPTIMIZE_DOCKERFILE_SETTING_NAME)
+  private boolean optimizeDockerfile;
+
   public String getJdk() {
     return jdk;
   }
@@ -73,6 +149,24 @@ public final class RuntimeConfig extends OverrideableSetting {
     this.buildScript = buildScript;
   }
 
+  public String getBuildScriptInputs() {
+    return buildScriptInputs;
+  }
+
+  @JsonProperty(BUILD_SCRIPT_INPUTS_SETTING_NAME)
+  public void setBuildScriptInputs(String buildScriptInputs) {
+    this.buildScriptInputs = buildScriptInputs;
+  }
+
+  public String getBuildScriptPrefetch() {
+    return buildScriptPrefetch;
+  }
+
+  @JsonProperty(BUILD_SCRIPT_PREFETCH_SETTING_NAME)
+  public void setBuildScriptPrefetch(String buildScriptPrefetch) {
+    this.buildScriptPrefetch = buildScriptPrefetch;
+  }
+
   public boolean getJettyQuickstart() {
     return jettyQuickstart;
   }
@@ -81,4 +175,148 @@ public final class RuntimeConfig extends OverrideableSetting {
   public void setJettyQuickstart(boolean jettyQuickstart) {
     this.jettyQuickstart = jettyQuickstart;
   }
+
+  public boolean getCacheDependencies() {
+    return cacheDependencies;
+  }
+
+  @JsonProperty(CACHE_DEPENDENCIES_SETTING_NAME)
+  public void setCacheDependencies(boolean cacheDependencies) {
+    this.cacheDependencies = cacheDependencies;
+  }
+
+  public String getGradleTask() {
+    return gradleTask;
+  }
+
+  @JsonProperty(GRADLE_TASK_SETTING_NAME)
+  public void setGradleTask(String gradleTask) {
+    this.gradleTask = gradleTask;
+  }
+
+  public String getBuildProfile() {
+    return buildProfile;
+  }
+
+  @JsonProperty(BUILD_PROFILE_SETTING_NAME)
+  public void setBuildProfile(String buildProfile) {
+    this.buildProfile = buildProfile;
+  }
+
+  public Boolean getGradleParallel() {
+    return gradleParallel;
+  }
+
+  @JsonProperty(GRADLE_PARALLEL_SETTING_NAME)
+  public void setGradleParallel(Boolean gradleParallel) {
+    this.gradleParallel = gradleParallel;
+  }
+
+  public Boolean getGradleBuildCache() {
+    return gradleBuildCache;
+  }
+
+  @JsonProperty(GRADLE_BUILD_CACHE_SETTING_NAME)
+  public void setGradleBuildCache(Boolean gradleBuildCache) {
+    this.gradleBuildCache = gradleBuildCache;
+  }
+
+  public Boolean getGradleConfigurationCache() {
+    return gradleConfigurationCache;
+  }
+
+  @JsonProperty(GRADLE_CONFIGURATION_CACHE_SETTING_NAME)
+  public void setGradleConfigurationCache(Boolean gradleConfigurationCache) {
+    this.gradleConfigurationCache = gradleConfigurationCache;
+  }
+
+  public Boolean getPruneBuildContext() {
+    return pruneBuildContext;
+  }
+
+  @JsonProperty(PRUNE_BUILD_CONTEXT_SETTING_NAME)
+  public void setPruneBuildContext(Boolean pruneBuildContext) {
+    this.pruneBuildContext = pruneBuildContext;
+  }
+
+  public boolean getDockerignoreAllowlist() {
+    return dockerignoreAllowlist;
+  }
+
+  @JsonProperty(DOCKERIGNORE_ALLOWLIST_SETTING_NAME)
+  public void setDockerignoreAllowlist(boolean dockerignoreAllowlist) {
+    this.dockerignoreAllowlist = dockerignoreAllowlist;
+  }
+
+  public boolean getSplitWarLayers() {
+    return splitWarLayers;
+  }
+
+  @JsonProperty(SPLIT_WAR_LAYERS_SETTING_NAME)
+  public void setSplitWarLayers(boolean splitWarLayers) {
+    this.splitWarLayers = splitWarLayers;
+  }
+
+  public boolean getExplodeWar() {
+    return explodeWar;
+  }
+
+  @JsonProperty(EXPLODE_WAR_SETTING_NAME)
+  public void setExplodeWar(boolean explodeWar) {
+    this.explodeWar = explodeWar;
+  }
+
+  public boolean getAppCds() {
+    return appCds;
+  }
+
+  @JsonProperty(APP_CDS_SETTING_NAME)
+  public void setAppCds(boolean appCds) {
+    this.appCds = appCds;
+  }
+
+  public boolean getNativeImage() {
+    return nativeImage;
+  }
+
+  @JsonProperty(NATIVE_IMAGE_SETTING_NAME)
+  public void setNativeImage(boolean nativeImage) {
+    this.nativeImage = nativeImage;
+  }
+
+  public boolean getJlink() {
+    return jlink;
+  }
+
+  @JsonProperty(JLINK_SETTING_NAME)
+  public void setJlink(boolean jlink) {
+    this.jlink = jlink;
+  }
+
+  public String getJvmProfile() {
+    return jvmProfile;
+  }
+
+  @JsonProperty(JVM_PROFILE_SETTING_NAME)
+  public void setJvmProfile(String jvmProfile) {
+    this.jvmProfile = jvmProfile;
+  }
+
+  public String getBuildContextBudget() {
+    return buildContextBudget;
+  }
+
+  @JsonProperty(BUILD_CONTEXT_BUDGET_SETTING_NAME)
+  public void setBuildContextBudget(String buildContextBudget) {
+    this.buildContextBudget = buildContextBudget;
+  }
+
+  public boolean getOptimizeDockerfile() {
+    return optimizeDockerfile;
+  }
+
+  @JsonProperty(OPTIMIZE_DOCKERFILE_SETTING_NAME)
+  public void setOptimizeDockerfile(boolean optimizeDockerfile) {
+    this.optimizeDockerfile = optimizeDockerfile;
+  }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * An index of the files and directories in a workspace, that answers queries about them from
+ * memory. Each directory is listed once, the first time that a query needs its contents, so that
+ * finding the build tool only lists the root of the workspace, and only a search for build files
+ * lists the rest of it. Hidden directories, node_modules, the output directories of maven and
+ * gradle projects and symbolic links are not listed. Queries about paths within them, or outside
+ * of the workspace, are answered from the file system. Queries throw an
+ * {@link UncheckedIOException} if a directory that they need can't be read.
+ */
+public class WorkspaceIndex {
+
+  private static final Set<String> SKIPPED_DIRS = ImmutableSet.of("node_modules");
+
+  private final Path workspaceDir;
+  // the listings of the queried directories, by their path relative to the workspace
+  private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+
+  private WorkspaceIndex(Path workspaceDir) {
+    this.workspaceDir = workspaceDir;
+  }
+
+  /**
+   * Returns an index of the given workspace. None of its directories are listed until they're
+   * queried.
+   */
+  public static WorkspaceIndex build(Path workspaceDir) {
+    return new WorkspaceIndex(workspaceDir);
+  }
+
+  public Path getWorkspaceDir() {
+    return workspaceDir;
+  }
+
+  /**
+   * Returns true if a file or directory exists at the given path, which is either absolute or
+   * relative to the workspace.
+   */
+  public boolean exists(Path path) {
+    return isFile(path) || isDirectory(path);
+  }
+
+  public boolean exists(String path) {
+    return exists(Paths.get(path));
+  }
+
+  /**
+   * Returns true if a regular file exists at the given path, which is either absolute or relative
+   * to the workspace.
+   */
+  public boolean isFile(Path path) {
+    Optional<Path> relativePath = getRelativePath(path);
+    Optional<Listing> listing = relativePath.flatMap(this::getParentListing);
+    if (!listing.isPresent()) {
+      return Files.isRegularFile(workspaceDir.resolve(path));
+    }
+    return listing.get().files.contains(relativePath.get().getFileName().toString());
+  }
+
+  public boolean isFile(String path) {
+    return isFile(Paths.get(path));
+  }
+
+  /**
+   * Returns true if a directory exists at the given path, which is either absolute or relative to
+   * the workspace.
+   */
+  public boolean isDirectory(Path path) {
+    Optional<Path> relativePath = getRelativePath(path);
+    if (relativePath.isPresent() && relativePath.get().toString().isEmpty()) {
+      return true;
+    }
+    Optional<Listing> listing = relativePath.flatMap(this::getParentListing);
+    if (!listing.isPresent()) {
+      return Files.isDirectory(workspaceDir.resolve(path));
+    }
+    return listing.get().directories.contains(relativePath.get().getFileName().toString());
+  }
+
+  /*
+   * Returns the path relative to the workspace, or empty if it's outside of the workspace.
+   */
+  private Optional<Path> getRelativePath(Path path) {
+    Path normalizedDir = workspaceDir.normalize();
+    Path absolutePath = workspaceDir.resolve(path).normalize();
+    if (!absolutePath.startsWith(normalizedDir)) {
+      return Optional.empty();
+    }
+    return Optional.of(normalizedDir.relativize(absolutePath));
+  }
+
+  /*
+   * Returns the listing of the directory that holds the given non-empty relative path, or empty if
+   * the path itself, or one of its parents, isn't listed.
+   */
+  private Optional<Listing> getParentListing(Path relativePath) {
+    Path parent = relativePath.getParent();
+    Optional<Listing> listing = getListing(parent == null ? Paths.get("") : parent);
+    String name = relativePath.getFileName().toString();
+    if (listing.isPresent() && listing.get().links.contains(name)) {
+      // links aren't followed, so their targets are looked up when they're queried
+      return Optional.empty();
+    }
+    return listing;
+  }
+
+  /*
+   * Returns the listing of the directory at the given relative path, which is empty if nothing
+   * exists there, or empty if the directory isn't listed.
+   */
+  private Optional<Listing> getListing(Path relativeDir) {
+    if (relativeDir.toString().isEmpty()) {
+      return Optional.of(listings.computeIfAbsent(relativeDir, this::list));
+    }
+    Optional<Listing> parentListing = getParentListing(relativeDir);
+    if (!parentListing.isPresent()) {
+      return Optional.empty();
+    }
+    String name = relativeDir.getFileName().toString();
+    if (!parentListing.get().directories.contains(name)) {
+      return Optional.of(Listing.EMPTY);
+    }
+    if (!parentListing.get().isListed(name)) {
+      return Optional.empty();
+    }
+    return Optional.of(listings.computeIfAbsent(relativeDir, this::list));
+  }
+
+  private Listing list(Path relativeDir) {
+    Listing listing = new Listing();
+    try (DirectoryStream<Path> entries
+        = Files.newDirectoryStream(workspaceDir.resolve(relativeDir))) {
+      for (Path entry : entries) {
+        String name = entry.getFileName().toString();
+        if (Files.isSymbolicLink(entry)) {
+          listing.links.add(name);
+        }
+        if (Files.isDirectory(entry)) {
+          listing.directories.add(name);
+        } else if (Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)
+            || listing.links.contains(name)) {
+          listing.files.add(name);
+        }
+      }
+    } catch (NoSuchFileException | NotDirectoryException e) {
+      return Listing.EMPTY;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return listing;
+  }
+
+  /**
+   * Returns the absolute paths of the files at the root of the workspace, in order of their names.
+   */
+  public List<Path> getRootFiles() {
+    return getListing(Paths.get("")).get().files.stream()
+        .sorted()
+        .map(workspaceDir::resolve)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Finds the build tool that should be used to build the workspace, if any, from the build files
+   * at its root.
+   */
+  public Optional<BuildTool> getBuildTool() {
+    return getRootFiles().stream()
+        .filter(BuildTool::isABuildFile)
+        // sort based on natural ordering of BuildTool for each path
+        .sorted(Comparator.comparing(BuildTool::getForBuildFile))
+        .findFirst()
+        .map(BuildTool::getForBuildFile);
+  }
+
+  /**
+   * Finds the build files of the given {@link BuildTool} anywhere in the listed directories of the
+   * workspace.
+   *
+   * @return workspace-relative paths to the build files, with parent projects ordered before their
+   *     modules
+   */
+  public List<Path> findBuildFiles(BuildTool buildTool) {
+    List<Path> buildFiles = new ArrayList<>();
+    collectBuildFiles(buildTool.getBuildFileName(), Paths.get(""), buildFiles);
+    buildFiles.sort(Comparator.comparing(Path::getNameCount).thenComparing(Path::toString));
+    return buildFiles;
+  }
+
+  private void collectBuildFiles(String buildFileName, Path relativeDir, List<Path> buildFiles) {
+    Listing listing = getListing(relativeDir).get();
+    if (listing.files.contains(buildFileName) && !listing.links.contains(buildFileName)) {
+      buildFiles.add(relativeDir.resolve(buildFileName));
+    }
+    for (String dir : listing.directories) {
+      if (listing.isListed(dir)) {
+        collectBuildFiles(buildFileName, relativeDir.resolve(dir), buildFiles);
+      }
+    }
+  }
+
+  /*
+   * The names of the entries of a directory.
+   */
+  private static class Listing {
+
+    private static final Listing EMPTY = new Listing();
+
+    private final Set<String> files = new HashSet<>();
+    private final Set<String> directories = new HashSet<>();
+    private final Set<String> links = new HashSet<>();
+
+    /*
+     * Returns true if the contents of the given subdirectory are listed, rather than looked up in
+     * the file system.
+     */
+    private boolean isListed(String dir) {
+      return !dir.startsWith(".") && !SKIPPED_DIRS.contains(dir) && !links.contains(dir)
+          && !isOutputDir(dir);
+    }
+
+    private boolean isOutputDir(String dir) {
+      for (BuildTool buildTool : BuildTool.values()) {
+        if (dir.equals(buildTool.getOutputDirName())
+            && files.contains(buildTool.getBuildFileName())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+}
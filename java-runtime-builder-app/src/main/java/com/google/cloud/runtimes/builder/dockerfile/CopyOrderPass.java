@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders adjacent COPY instructions by how often their sources change, so that the COPYs that
+ * their build steps declare to add dependencies come before the application, and their layers stay
+ * cached when only the application changes. COPYs are only reordered if none of their destinations
+ * overlap, so that the copied files are the same.
+ */
+public class CopyOrderPass implements DockerfilePass {
+
+  private static final Comparator<Instruction> BY_VOLATILITY =
+      Comparator.comparingInt(copy -> copy.isDependencies() ? 0 : 1);
+
+  @Override
+  public boolean apply(List<Stage> stages) {
+    boolean changed = false;
+    for (Stage stage : stages) {
+      List<Instruction> instructions = new ArrayList<>(stage.getInstructions());
+      int start = 0;
+      while (start < instructions.size()) {
+        int end = start;
+        while (end < instructions.size() && instructions.get(end).is("COPY")) {
+          end++;
+        }
+        if (end - start > 1) {
+          changed |= sort(instructions.subList(start, end));
+        }
+        start = end + 1;
+      }
+      stage.setInstructions(instructions);
+    }
+    return changed;
+  }
+
+  private static boolean sort(List<Instruction> copies) {
+    List<String> destinations = new ArrayList<>();
+    for (Instruction copy : copies) {
+      String[] arguments = copy.getArguments().split("\\s+");
+      String destination = arguments[arguments.length - 1];
+      if (arguments.length < 2 || destination.startsWith("[") || destination.contains("$")) {
+        return false;
+      }
+      destinations.add(destination.endsWith("/") && destination.length() > 1
+          ? destination.substring(0, destination.length() - 1) : destination);
+    }
+    for (int i = 0; i < destinations.size(); i++) {
+      for (int j = i + 1; j < destinations.size(); j++) {
+        if (overlap(destinations.get(i), destinations.get(j))) {
+          return false;
+        }
+      }
+    }
+
+    List<Instruction> sorted = new ArrayList<>(copies);
+    sorted.sort(BY_VOLATILITY);
+    if (sorted.equals(copies)) {
+      return false;
+    }
+    for (int i = 0; i < sorted.size(); i++) {
+      copies.set(i, sorted.get(i));
+    }
+    return true;
+  }
+
+  private static boolean overlap(String first, String second) {
+    if (first.startsWith("/") != second.startsWith("/")) {
+      // relative to the working directory, which may be anywhere
+      return true;
+    }
+    return first.equals(second) || first.startsWith(second + "/")
+        || second.startsWith(first + "/") || first.equals("/") || second.equals("/");
+  }
+
+}
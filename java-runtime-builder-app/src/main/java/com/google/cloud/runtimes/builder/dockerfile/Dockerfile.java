@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Dockerfile, made of the parser directives at its top and of a list of {@link Stage}s, which
+ * build steps add instructions to.
+ */
+public class Dockerfile {
+
+  private final List<String> directives = new ArrayList<>();
+  private final List<Stage> stages = new ArrayList<>();
+
+  /**
+   * Adds a parser directive, such as # syntax=docker/dockerfile:1, unless it's already there.
+   */
+  public Dockerfile addDirective(String directive) {
+    if (!directives.contains(directive)) {
+      directives.add(directive);
+    }
+    return this;
+  }
+
+  public List<String> getDirectives() {
+    return directives;
+  }
+
+  /**
+   * Starts a new stage from the given image.
+   */
+  public Stage addStage(String baseImage) {
+    return addStage(baseImage, null);
+  }
+
+  /**
+   * Starts a new stage from the given image, with a name that later stages can refer to it by.
+   */
+  public Stage addStage(String baseImage, String name) {
+    Stage stage = new Stage(baseImage, name);
+    stages.add(stage);
+    return stage;
+  }
+
+  /**
+   * Returns the stage that was started last, which builds the image unless another one follows.
+   *
+   * @throws IllegalStateException if no stage was started
+   */
+  public Stage getLastStage() {
+    Preconditions.checkState(!stages.isEmpty(), "The Dockerfile has no stages.");
+    return stages.get(stages.size() - 1);
+  }
+
+  /**
+   * Returns the stages of the Dockerfile, which can be rewritten in place.
+   */
+  public List<Stage> getStages() {
+    return stages;
+  }
+
+  @Override
+  public String toString() {
+    List<String> lines = new ArrayList<>(directives);
+    for (int i = 0; i < stages.size(); i++) {
+      if (i > 0) {
+        lines.add("");
+      }
+      lines.add(stages.get(i).getFrom());
+      stages.get(i).getInstructions().forEach(instruction -> lines.add(instruction.toString()));
+    }
+    StringBuilder builder = new StringBuilder();
+    for (String line : lines) {
+      builder.append(line).append(System.lineSeparator());
+    }
+    return builder.toString();
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import com.google.common.collect.ImmutableList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Runs a series of {@link DockerfilePass}es over a generated {@link Dockerfile} before it is
+ * written, so that it builds fewer layers and reuses more of them from the build cache. It's only
+ * run if runtime_config.optimize_dockerfile is set.
+ */
+public class DockerfileOptimizer {
+
+  private final Logger logger = LoggerFactory.getLogger(DockerfileOptimizer.class);
+
+  private final List<DockerfilePass> passes;
+
+  /**
+   * Constructs a new {@link DockerfileOptimizer} with the default passes.
+   */
+  public DockerfileOptimizer() {
+    this(ImmutableList.of(new RedundantInstructionPass(), new CopyOrderPass(),
+        new MergeRunsPass()));
+  }
+
+  public DockerfileOptimizer(List<DockerfilePass> passes) {
+    this.passes = passes;
+  }
+
+  /**
+   * Applies the passes to the stages of the given Dockerfile, in order.
+   */
+  public void optimize(Dockerfile dockerfile) {
+    for (DockerfilePass pass : passes) {
+      if (pass.apply(dockerfile.getStages())) {
+        logger.debug("Applied {} to the Dockerfile", pass.getClass().getSimpleName());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import java.util.List;
+
+/**
+ * A rewrite of the stages of a {@link Dockerfile} that doesn't change the image it builds.
+ */
+public interface DockerfilePass {
+
+  /**
+   * Rewrites the given stages in place.
+   *
+   * @return true if any stage was changed
+   */
+  boolean apply(List<Stage> stages);
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A single instruction of a {@link Dockerfile} stage, such as a COPY, RUN or ENV. The flags of the
+ * instruction, such as --from on a COPY, are kept apart from its arguments. Build steps declare the
+ * instructions that add or resolve the application's dependencies, which change less often than
+ * the application itself, so that the {@link DockerfileOptimizer} keeps them in layers of their own
+ * ahead of the others.
+ */
+public class Instruction {
+
+  private final String keyword;
+  private final List<String> flags;
+  private final String arguments;
+  private final boolean dependencies;
+
+  /**
+   * Constructs a new {@link Instruction}.
+   *
+   * @param keyword the upper case name of the instruction
+   * @param flags the flags of the instruction, such as --from=builder
+   * @param arguments the rest of the instruction
+   */
+  public Instruction(String keyword, List<String> flags, String arguments) {
+    this(keyword, flags, arguments, false);
+  }
+
+  private Instruction(String keyword, List<String> flags, String arguments,
+      boolean dependencies) {
+    this.keyword = keyword;
+    this.flags = ImmutableList.copyOf(flags);
+    this.arguments = arguments;
+    this.dependencies = dependencies;
+  }
+
+  /**
+   * Returns a shell form RUN instruction for the given command.
+   */
+  public static Instruction run(List<String> flags, String command) {
+    return new Instruction("RUN", flags, command);
+  }
+
+  /**
+   * Returns a COPY instruction of the given source in the build context to the given destination.
+   */
+  public static Instruction copy(String source, String destination) {
+    return copy(ImmutableList.of(), source, destination);
+  }
+
+  /**
+   * Returns a COPY instruction of the given source to the given destination.
+   */
+  public static Instruction copy(List<String> flags, String source, String destination) {
+    return new Instruction("COPY", flags, source + " " + destination);
+  }
+
+  /**
+   * Returns a COPY instruction of the given source in another stage to the given destination.
+   */
+  public static Instruction copyFrom(String stage, String source, String destination) {
+    return copy(ImmutableList.of("--from=" + stage), source, destination);
+  }
+
+  /**
+   * Returns a copy of this instruction that is declared to add or resolve dependencies.
+   */
+  public Instruction asDependencies() {
+    return new Instruction(keyword, flags, arguments, true);
+  }
+
+  public boolean isDependencies() {
+    return dependencies;
+  }
+
+  public String getKeyword() {
+    return keyword;
+  }
+
+  public List<String> getFlags() {
+    return flags;
+  }
+
+  /**
+   * Returns the value of the flag with the given name, such as builder for --from=builder.
+   */
+  public Optional<String> getFlag(String name) {
+    String prefix = "--" + name + "=";
+    return flags.stream()
+        .filter(flag -> flag.startsWith(prefix))
+        .map(flag -> flag.substring(prefix.length()))
+        .findFirst();
+  }
+
+  public String getArguments() {
+    return arguments;
+  }
+
+  public boolean is(String keyword) {
+    return this.keyword.equals(keyword);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (other == null || getClass() != other.getClass()) {
+      return false;
+    }
+    Instruction instruction = (Instruction) other;
+    return dependencies == instruction.dependencies && toString().equals(instruction.toString());
+  }
+
+  @Override
+  public int hashCode() {
+    return toString().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(keyword);
+    for (String flag : flags) {
+      builder.append(' ').append(flag);
+    }
+    if (!arguments.isEmpty()) {
+      builder.append(' ').append(arguments);
+    }
+    return builder.toString();
+  }
+}
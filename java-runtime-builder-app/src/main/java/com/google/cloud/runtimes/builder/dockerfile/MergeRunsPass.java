@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Merges adjacent shell form RUN instructions with the same flags into a single RUN, so that they
+ * produce one layer. RUNs that their build steps declare to resolve dependencies are only merged
+ * with each other, so that their layer stays cached when the application changes. Each of the
+ * commands runs in its own subshell, so that changes to the shell's state, such as its working
+ * directory or variables, don't carry over to the next command, just as they don't between
+ * separate RUNs. The merged RUN fails if any of its commands fails, as the separate RUNs did.
+ */
+public class MergeRunsPass implements DockerfilePass {
+
+  @Override
+  public boolean apply(List<Stage> stages) {
+    boolean changed = false;
+    for (Stage stage : stages) {
+      List<Instruction> merged = new ArrayList<>();
+      // the commands of the RUNs that were merged into the last instruction
+      List<String> commands = new ArrayList<>();
+      for (Instruction instruction : stage.getInstructions()) {
+        Instruction previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+        if (previous != null && canMerge(previous, instruction)) {
+          commands.add(instruction.getArguments());
+          Instruction run = Instruction.run(previous.getFlags(), commands.stream()
+              // a space keeps bash from reading a command that starts with ( as arithmetic
+              .map(command -> "( " + command + " )")
+              .collect(Collectors.joining(" && ")));
+          merged.set(merged.size() - 1, previous.isDependencies() ? run.asDependencies() : run);
+          changed = true;
+        } else {
+          merged.add(instruction);
+          commands.clear();
+          commands.add(instruction.getArguments());
+        }
+      }
+      stage.setInstructions(merged);
+    }
+    return changed;
+  }
+
+  private static boolean canMerge(Instruction first, Instruction second) {
+    return isShellRun(first) && isShellRun(second) && first.getFlags().equals(second.getFlags())
+        && first.isDependencies() == second.isDependencies();
+  }
+
+  private static boolean isShellRun(Instruction instruction) {
+    String command = instruction.getArguments();
+    // exec form, heredocs and comments can't be chained with other commands
+    return instruction.is("RUN") && !command.isEmpty() && !command.startsWith("[")
+        && !command.contains("<<") && !command.contains("#");
+  }
+
+}
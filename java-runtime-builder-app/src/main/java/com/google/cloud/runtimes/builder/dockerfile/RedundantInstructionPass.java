@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Drops instructions that don't change the image: repeats of the instruction before them, WORKDIRs
+ * to the current working directory, and named stages that no later stage refers to.
+ */
+public class RedundantInstructionPass implements DockerfilePass {
+
+  // instructions that have no further effect when repeated
+  private static final Set<String> IDEMPOTENT_KEYWORDS = ImmutableSet.of("COPY", "ENV", "WORKDIR",
+      "LABEL", "EXPOSE", "USER");
+
+  @Override
+  public boolean apply(List<Stage> stages) {
+    boolean changed = false;
+    for (Stage stage : stages) {
+      changed |= dropRepeatedInstructions(stage);
+    }
+    return dropUnusedStages(stages) || changed;
+  }
+
+  private static boolean dropRepeatedInstructions(Stage stage) {
+    List<Instruction> kept = new ArrayList<>();
+    // the working directory is unknown until a WORKDIR sets an absolute path
+    Optional<String> workdir = Optional.empty();
+    for (Instruction instruction : stage.getInstructions()) {
+      Instruction previous = kept.isEmpty() ? null : kept.get(kept.size() - 1);
+      if (IDEMPOTENT_KEYWORDS.contains(instruction.getKeyword()) && instruction.equals(previous)) {
+        continue;
+      }
+      if (instruction.is("WORKDIR")) {
+        String path = instruction.getArguments();
+        if (workdir.isPresent() && workdir.get().equals(path)) {
+          continue;
+        }
+        workdir = path.startsWith("/") && !path.contains("$") ? Optional.of(path)
+            : Optional.empty();
+      }
+      kept.add(instruction);
+    }
+    boolean changed = kept.size() < stage.getInstructions().size();
+    stage.setInstructions(kept);
+    return changed;
+  }
+
+  /*
+   * Only named stages are dropped, and only if no stage is referred to by its index, which
+   * dropping a stage would shift.
+   */
+  private static boolean dropUnusedStages(List<Stage> stages) {
+    Set<String> references = new HashSet<>();
+    for (Stage stage : stages) {
+      references.add(stage.getBaseImage());
+      for (Instruction instruction : stage.getInstructions()) {
+        for (String flag : instruction.getFlags()) {
+          // from=stage in a --mount
+          for (String option : flag.replaceFirst("^--[^=]*=", "").split(",")) {
+            if (option.startsWith("from=")) {
+              references.add(option.substring("from=".length()));
+            }
+          }
+        }
+        // --from=stage on a COPY
+        instruction.getFlag("from").ifPresent(references::add);
+      }
+    }
+    if (references.stream().anyMatch(reference -> reference.matches("\\d+"))) {
+      return false;
+    }
+
+    boolean changed = false;
+    for (int i = stages.size() - 2; i >= 0; i--) {
+      Optional<String> name = stages.get(i).getName();
+      if (name.isPresent() && !references.contains(name.get())) {
+        stages.remove(i);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+}
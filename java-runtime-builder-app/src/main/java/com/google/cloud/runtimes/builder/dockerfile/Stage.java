@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A stage of a {@link Dockerfile}: the image it starts from, the name that later stages refer to
+ * it by, and the instructions that build on it.
+ */
+public class Stage {
+
+  private final String baseImage;
+  private final String name;
+  private List<Instruction> instructions = new ArrayList<>();
+
+  /**
+   * Constructs a new {@link Stage}.
+   *
+   * @param baseImage the image that the stage starts from
+   * @param name the name of the stage, or {@code null} if it isn't referred to by name
+   */
+  public Stage(String baseImage, String name) {
+    this.baseImage = baseImage;
+    this.name = name;
+  }
+
+  /**
+   * Appends an instruction to the stage.
+   */
+  public Stage add(Instruction instruction) {
+    instructions.add(instruction);
+    return this;
+  }
+
+  /**
+   * Appends an instruction without flags to the stage.
+   */
+  public Stage add(String keyword, String arguments) {
+    return add(new Instruction(keyword, ImmutableList.of(), arguments));
+  }
+
+  public String getBaseImage() {
+    return baseImage;
+  }
+
+  public Optional<String> getName() {
+    return Optional.ofNullable(name);
+  }
+
+  public List<Instruction> getInstructions() {
+    return instructions;
+  }
+
+  public void setInstructions(List<Instruction> instructions) {
+    this.instructions = instructions;
+  }
+
+  /**
+   * Returns the FROM instruction that starts the stage.
+   */
+  public String getFrom() {
+    return "FROM " + baseImage + (name == null ? "" : " as " + name);
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.cloud.runtimes.builder.injection;
 
+import com.google.cloud.runtimes.builder.Application;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepFactory;
 import com.google.cloud.runtimes.builder.config.AppYamlFinder;
 import com.google.cloud.runtimes.builder.config.AppYamlParser;
@@ -24,6 +25,7 @@ import com.google.cloud.runtimes.builder.config.domain.AppYaml;
 import com.google.cloud.runtimes.builder.config.domain.BuildContextFactory;
 import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
@@ -33,6 +35,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Module class for configuring Guice bindings.
@@ -43,11 +46,16 @@ public class RootModule extends AbstractModule {
   private final String compatImage;
   private final String mavenDockerImage;
   private final String gradleDockerImage;
+  private final String builderDockerImage;
   private final boolean disableSourceBuild;
+  private final boolean enableCacheMounts;
+  private final String cacheMountSharing;
 
   private final Map<String, Object> commandLineOverrideSettings;
 
   private static final String CONFIG_YAML_ENV_VAR = "GAE_APPLICATION_YAML_PATH";
+  private static final Set<String> CACHE_MOUNT_SHARING_MODES
+      = ImmutableSet.of("shared", "private", "locked");
 
   /**
    * Constructs a new {@link RootModule} for Guice.
@@ -56,23 +64,34 @@ public class RootModule extends AbstractModule {
    * @param compatImage compat runtime docker image
    * @param mavenDockerImage maven builder docker image
    * @param gradleDockerImage gradle builder docker image
+   * @param builderDockerImage docker image of build scripts and war stages
    * @param disableSourceBuild disables the building of images from source
+   * @param enableCacheMounts enables BuildKit cache mounts in build stages
+   * @param cacheMountSharing the BuildKit sharing mode of cache mounts
    * @param commandLineOverrideSettings a map of settings from commandline to override
    */
   public RootModule(JdkServerLookup jdkServerLookup, String compatImage,
-      String mavenDockerImage, String gradleDockerImage, boolean disableSourceBuild,
+      String mavenDockerImage, String gradleDockerImage, String builderDockerImage,
+      boolean disableSourceBuild, boolean enableCacheMounts, String cacheMountSharing,
       Map<String, Object> commandLineOverrideSettings) {
     Preconditions.checkNotNull(jdkServerLookup);
     Preconditions.checkNotNull(compatImage);
     Preconditions.checkNotNull(mavenDockerImage);
     Preconditions.checkNotNull(gradleDockerImage);
+    Preconditions.checkNotNull(builderDockerImage);
+    Preconditions.checkArgument(CACHE_MOUNT_SHARING_MODES.contains(cacheMountSharing),
+        "Invalid cache mount sharing mode '%s'. Expected one of %s", cacheMountSharing,
+        CACHE_MOUNT_SHARING_MODES);
     Preconditions.checkNotNull(commandLineOverrideSettings);
 
     this.jdkServerLookup = jdkServerLookup;
     this.compatImage = compatImage;
     this.mavenDockerImage = mavenDockerImage;
     this.gradleDockerImage = gradleDockerImage;
+    this.builderDockerImage = builderDockerImage;
     this.disableSourceBuild = disableSourceBuild;
+    this.enableCacheMounts = enableCacheMounts;
+    this.cacheMountSharing = cacheMountSharing;
 
     this.commandLineOverrideSettings = commandLineOverrideSettings;
   }
@@ -88,8 +107,9 @@ public class RootModule extends AbstractModule {
    */
   public RootModule(JdkServerLookup jdkServerLookup, String compatImage,
       String mavenDockerImage, String gradleDockerImage, boolean disableSourceBuild) {
-    this(jdkServerLookup,compatImage,mavenDockerImage,gradleDockerImage,disableSourceBuild,
-        Collections.emptyMap());
+    this(jdkServerLookup,compatImage,mavenDockerImage,gradleDockerImage,
+        Application.DEFAULT_BUILDER_DOCKER_IMAGE, disableSourceBuild, false,
+        Application.DEFAULT_CACHE_MOUNT_SHARING, Collections.emptyMap());
   }
 
   @Override
@@ -112,9 +132,18 @@ public class RootModule extends AbstractModule {
     bind(String.class)
         .annotatedWith(GradleDockerImage.class)
         .toInstance(gradleDockerImage);
+    bind(String.class)
+        .annotatedWith(BuilderDockerImage.class)
+        .toInstance(builderDockerImage);
     bind(Boolean.class)
         .annotatedWith(DisableSourceBuild.class)
         .toInstance(disableSourceBuild);
+    bind(Boolean.class)
+        .annotatedWith(EnableCacheMounts.class)
+        .toInstance(enableCacheMounts);
+    bind(String.class)
+        .annotatedWith(CacheMountSharing.class)
+        .toInstance(cacheMountSharing);
 
     bind(new TypeLiteral<YamlParser<AppYaml>>(){})
         .to(AppYamlParser.class);
@@ -20,6 +20,8 @@ import static junit.framework.TestCase.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -27,9 +29,13 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import com.google.cloud.runtimes.builder.buildsteps.AppCdsBuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.ContextPruningBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.GradleBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.JettyOptionsBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.MavenBuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.NativeImageBuildStep;
+import com.google.cloud.runtimes.builder.buildsteps.NativeRuntimeImageBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.PrebuiltRuntimeImageBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.ScriptExecutionBuildStep;
 import com.google.cloud.runtimes.builder.buildsteps.SourceBuildRuntimeImageBuildStep;
@@ -44,6 +50,7 @@ import com.google.cloud.runtimes.builder.config.domain.BuildContext;
 import com.google.cloud.runtimes.builder.config.domain.BuildContextFactory;
 import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
 import com.google.common.base.Objects;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import java.io.IOException;
@@ -71,7 +78,11 @@ public class BuildPipelineConfiguratorTest {
   @Mock private ScriptExecutionBuildStep scriptExecutionBuildStep;
   @Mock private PrebuiltRuntimeImageBuildStep prebuiltRuntimeImageBuildStep;
   @Mock private SourceBuildRuntimeImageBuildStep sourceBuildRuntimeImageBuildStep;
+  @Mock private NativeImageBuildStep nativeImageBuildStep;
+  @Mock private NativeRuntimeImageBuildStep nativeRuntimeImageBuildStep;
+  @Mock private AppCdsBuildStep appCdsBuildStep;
   @Mock private JettyOptionsBuildStep jettyOptionsBuildStep;
+  @Mock private ContextPruningBuildStep contextPruningBuildStep;
   @Mock private AppYamlFinder appYamlFinder;
   @Mock
   private YamlParser<AppYaml> appYamlYamlParser;
@@ -94,8 +105,16 @@ public class BuildPipelineConfiguratorTest {
         .thenReturn(prebuiltRuntimeImageBuildStep);
     when(buildStepFactory.createSourceBuildRuntimeImageStep())
         .thenReturn(sourceBuildRuntimeImageBuildStep);
+    when(buildStepFactory.createNativeImageBuildStep())
+        .thenReturn(nativeImageBuildStep);
+    when(buildStepFactory.createNativeRuntimeImageBuildStep())
+        .thenReturn(nativeRuntimeImageBuildStep);
+    when(buildStepFactory.createAppCdsBuildStep())
+        .thenReturn(appCdsBuildStep);
     when(buildStepFactory.createJettyOptionsBuildStep())
         .thenReturn(jettyOptionsBuildStep);
+    when(buildStepFactory.createContextPruningBuildStep())
+        .thenReturn(contextPruningBuildStep);
 
     when(appYamlYamlParser.parse(any())).thenReturn(appYaml);
     when(appYamlYamlParser.getEmpty()).thenReturn(appYaml);
@@ -143,11 +162,53 @@ public class BuildPipelineConfiguratorTest {
     buildPipelineConfigurator.generateDockerResources(workspace);
 
     verify(buildStepFactory, times(1)).createPrebuiltRuntimeImageBuildStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
     verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
     verifyNoMoreInteractions(buildStepFactory);
 
     assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), prebuiltRuntimeImageBuildStep,
-        jettyOptionsBuildStep);
+        appCdsBuildStep, jettyOptionsBuildStep, contextPruningBuildStep);
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testBuildContextOverBudget() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("foo.war").withContents(Strings.repeat("a", 2048)).build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setBuildContextBudget("1K");
+    appYaml.setRuntimeConfig(runtimeConfig);
+
+    buildPipelineConfigurator.generateDockerResources(workspace);
+  }
+
+  @Test
+  public void testBuildContextWithinBudget() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("foo.war").withContents(Strings.repeat("a", 2048)).build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setBuildContextBudget("1M");
+    appYaml.setRuntimeConfig(runtimeConfig);
+
+    buildPipelineConfigurator.generateDockerResources(workspace);
+  }
+
+  @Test
+  public void testUnreadableBuildContextWithoutBudget() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("foo.war").build()
+        .build();
+    // the build context analysis walks a directory that can't be read
+    doAnswer(invocation -> {
+      BuildContext buildContext = spy(new BuildContext(invocation.getArgument(0),
+          invocation.getArgument(1), disableSourceBuild));
+      doReturn(workspace.resolve("missing")).when(buildContext).getWorkspaceDir();
+      return buildContext;
+    }).when(buildContextFactory).createBuildContext(any(), any());
+
+    buildPipelineConfigurator.generateDockerResources(workspace);
   }
 
   @Test
@@ -160,11 +221,14 @@ public class BuildPipelineConfiguratorTest {
 
     verify(buildStepFactory, times(1)).createMavenBuildStep();
     verify(buildStepFactory, times(1)).createSourceBuildRuntimeImageStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
     verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
     verifyNoMoreInteractions(buildStepFactory);
 
     assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), mavenBuildStep,
-        sourceBuildRuntimeImageBuildStep, jettyOptionsBuildStep);
+        sourceBuildRuntimeImageBuildStep, appCdsBuildStep, jettyOptionsBuildStep,
+        contextPruningBuildStep);
   }
 
   @Test
@@ -177,11 +241,14 @@ public class BuildPipelineConfiguratorTest {
 
     verify(buildStepFactory, times(1)).createGradleBuildStep();
     verify(buildStepFactory, times(1)).createSourceBuildRuntimeImageStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
     verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
     verifyNoMoreInteractions(buildStepFactory);
 
     assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), gradleBuildStep,
-        sourceBuildRuntimeImageBuildStep, jettyOptionsBuildStep);
+        sourceBuildRuntimeImageBuildStep, appCdsBuildStep, jettyOptionsBuildStep,
+        contextPruningBuildStep);
   }
 
   @Test
@@ -195,11 +262,14 @@ public class BuildPipelineConfiguratorTest {
 
     verify(buildStepFactory, times(1)).createMavenBuildStep();
     verify(buildStepFactory, times(1)).createSourceBuildRuntimeImageStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
     verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
     verifyNoMoreInteractions(buildStepFactory);
 
     assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), mavenBuildStep,
-        sourceBuildRuntimeImageBuildStep, jettyOptionsBuildStep);
+        sourceBuildRuntimeImageBuildStep, appCdsBuildStep, jettyOptionsBuildStep,
+        contextPruningBuildStep);
   }
 
   @Test
@@ -227,14 +297,17 @@ public class BuildPipelineConfiguratorTest {
 
     verify(buildStepFactory, times(1)).createScriptExecutionBuildStep(eq(customScript));
     verify(buildStepFactory, times(1)).createSourceBuildRuntimeImageStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
     verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
     verifyNoMoreInteractions(buildStepFactory);
 
     RuntimeConfig expectedConfig = new RuntimeConfig();
     expectedConfig.setBuildScript(customScript);
     expectedConfig.setJdk("fakeJdk");
     assertBuildStepsCalledWithRuntimeConfig(expectedConfig, scriptExecutionBuildStep,
-        sourceBuildRuntimeImageBuildStep, jettyOptionsBuildStep);
+        sourceBuildRuntimeImageBuildStep, appCdsBuildStep, jettyOptionsBuildStep,
+        contextPruningBuildStep);
   }
 
   @Test
@@ -248,11 +321,57 @@ public class BuildPipelineConfiguratorTest {
 
     verify(buildStepFactory, times(1)).createMavenBuildStep();
     verify(buildStepFactory, times(1)).createSourceBuildRuntimeImageStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
     verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
     verifyNoMoreInteractions(buildStepFactory);
 
     assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), mavenBuildStep,
-        sourceBuildRuntimeImageBuildStep, jettyOptionsBuildStep);
+        sourceBuildRuntimeImageBuildStep, appCdsBuildStep, jettyOptionsBuildStep,
+        contextPruningBuildStep);
+  }
+
+  @Test
+  public void testNativeImageMavenBuild() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .build();
+    appYaml.getRuntimeConfig().setNativeImage(true);
+
+    buildPipelineConfigurator.generateDockerResources(workspace);
+
+    verify(buildStepFactory, times(1)).createMavenBuildStep();
+    verify(buildStepFactory, times(1)).createNativeImageBuildStep();
+    verify(buildStepFactory, times(1)).createNativeRuntimeImageBuildStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
+    verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
+    verifyNoMoreInteractions(buildStepFactory);
+
+    assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), mavenBuildStep,
+        nativeImageBuildStep, nativeRuntimeImageBuildStep, appCdsBuildStep,
+        jettyOptionsBuildStep, contextPruningBuildStep);
+  }
+
+  @Test
+  public void testNativeImagePrebuiltArtifact() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").build()
+        .build();
+    appYaml.getRuntimeConfig().setNativeImage(true);
+
+    buildPipelineConfigurator.generateDockerResources(workspace);
+
+    verify(buildStepFactory, times(1)).createNativeImageBuildStep();
+    verify(buildStepFactory, times(1)).createNativeRuntimeImageBuildStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
+    verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
+    verifyNoMoreInteractions(buildStepFactory);
+
+    assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), nativeImageBuildStep,
+        nativeRuntimeImageBuildStep, appCdsBuildStep, jettyOptionsBuildStep,
+        contextPruningBuildStep);
   }
 
   @Test
@@ -288,11 +407,13 @@ public class BuildPipelineConfiguratorTest {
     buildPipelineConfigurator.generateDockerResources(workspace);
 
     verify(buildStepFactory, times(1)).createPrebuiltRuntimeImageBuildStep();
+    verify(buildStepFactory, times(1)).createAppCdsBuildStep();
     verify(buildStepFactory, times(1)).createJettyOptionsBuildStep();
+    verify(buildStepFactory, times(1)).createContextPruningBuildStep();
     verifyNoMoreInteractions(buildStepFactory);
 
     assertBuildStepsCalledWithRuntimeConfig(new RuntimeConfig(), prebuiltRuntimeImageBuildStep,
-        jettyOptionsBuildStep);
+        appCdsBuildStep, jettyOptionsBuildStep, contextPruningBuildStep);
   }
 
 }
@@ -20,10 +20,15 @@ import com.google.common.collect.Sets;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class TestUtils {
 
@@ -50,6 +55,7 @@ public class TestUtils {
       private final Path path;
       private final TestWorkspaceBuilder workspaceBuilder;
       private String contents = "";
+      private Map<String, String> zipEntries = new LinkedHashMap<>();
       private boolean isExecutable = false;
 
       private FileBuilder(TestWorkspaceBuilder workspaceBuilder, Path path) {
@@ -62,6 +68,14 @@ public class TestUtils {
         return this;
       }
 
+      /**
+       * Makes the file a zip archive, such as a JAR or WAR, that contains the given entry.
+       */
+      public FileBuilder withZipEntry(String name, String contents) {
+        zipEntries.put(name, contents);
+        return this;
+      }
+
       public FileBuilder setIsExecutable(boolean isExecutable) {
         this.isExecutable = isExecutable;
         return this;
@@ -71,8 +85,28 @@ public class TestUtils {
         // mkdir -p
         Files.createDirectories(path.getParent());
 
-        try (Writer out = Files.newBufferedWriter(path, Charset.defaultCharset())) {
-          out.write(contents);
+        String extension = com.google.common.io.Files.getFileExtension(path.toString());
+        if (zipEntries.isEmpty() && contents.isEmpty()
+            && (extension.equals("jar") || extension.equals("war"))) {
+          // an empty archive is just an end of central directory record
+          byte[] emptyArchive = new byte[22];
+          emptyArchive[0] = 0x50;
+          emptyArchive[1] = 0x4b;
+          emptyArchive[2] = 0x05;
+          emptyArchive[3] = 0x06;
+          Files.write(path, emptyArchive);
+        } else if (zipEntries.isEmpty()) {
+          try (Writer out = Files.newBufferedWriter(path, Charset.defaultCharset())) {
+            out.write(contents);
+          }
+        } else {
+          try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (Map.Entry<String, String> entry : zipEntries.entrySet()) {
+              out.putNextEntry(new ZipEntry(entry.getKey()));
+              out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+              out.closeEntry();
+            }
+          }
         }
 
         Set<PosixFilePermission> permissions = Sets.newHashSet(
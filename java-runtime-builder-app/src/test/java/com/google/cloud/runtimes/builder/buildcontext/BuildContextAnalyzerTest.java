@@ -0,0 +1,82 @@
+package com.google.cloud.runtimes.builder.buildcontext;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import com.google.common.base.Strings;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class BuildContextAnalyzerTest {
+
+  @Test
+  public void testAnalyze() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file(".dockerignore").withContents("Dockerfile\n.dockerignore\ntarget\n"
+            + "!target/app.jar\n**/*.log\n").build()
+        .file("Dockerfile").withContents("FROM image\n").build()
+        .file("target/app.jar").withContents(Strings.repeat("a", 100)).build()
+        .file("target/classes/Main.class").withContents(Strings.repeat("b", 1000)).build()
+        .file("src/main/java/Main.java").withContents(Strings.repeat("c", 50)).build()
+        .file("src/main/resources/app.properties").withContents(Strings.repeat("d", 20)).build()
+        .file("src/debug.log").withContents(Strings.repeat("e", 5000)).build()
+        .build();
+
+    BuildContextSize contextSize = new BuildContextAnalyzer().analyze(workspace);
+
+    // the Dockerfile and .dockerignore are always sent
+    assertEquals(5, contextSize.getFileCount());
+    assertEquals(11 + 57 + 100 + 50 + 20, contextSize.getByteCount());
+    assertEquals("target (100 B, 1 files)",
+        contextSize.getLargestDirectories().get(0).toString());
+    assertEquals("src", contextSize.getLargestDirectories().get(1).getPath());
+    assertEquals(70, contextSize.getLargestDirectories().get(1).getByteCount());
+    assertEquals("src/main", contextSize.getLargestDirectories().get(2).getPath());
+  }
+
+  @Test
+  public void testAnalyzeWithoutDockerignore() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("a/b/c/file").withContents("abc").build()
+        .build();
+
+    BuildContextSize contextSize = new BuildContextAnalyzer().analyze(workspace);
+    assertEquals(1, contextSize.getFileCount());
+    assertEquals(3, contextSize.getByteCount());
+    // only directories up to two levels deep are reported
+    assertEquals(2, contextSize.getLargestDirectories().size());
+  }
+
+  @Test
+  public void testParseSize() {
+    assertEquals(512, BuildContextAnalyzer.parseSize("512"));
+    assertEquals(2048, BuildContextAnalyzer.parseSize("2K"));
+    assertEquals(200L << 20, BuildContextAnalyzer.parseSize("200MB"));
+    assertEquals(1L << 30, BuildContextAnalyzer.parseSize("1 GiB"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseInvalidSize() {
+    BuildContextAnalyzer.parseSize("lots");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseOverflowingSize() {
+    BuildContextAnalyzer.parseSize("99999999999T");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseOverflowingNumber() {
+    BuildContextAnalyzer.parseSize("99999999999999999999");
+  }
+
+  @Test
+  public void testFormatBytes() {
+    assertEquals("999 B", BuildContextSize.formatBytes(999));
+    assertEquals("1.5 KB", BuildContextSize.formatBytes(1536));
+    assertEquals("200.0 MB", BuildContextSize.formatBytes(200L << 20));
+  }
+}
@@ -0,0 +1,56 @@
+package com.google.cloud.runtimes.builder.buildcontext;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+public class DockerignoreMatcherTest {
+
+  @Test
+  public void testDirectoryExcludesItsContents() {
+    DockerignoreMatcher matcher = new DockerignoreMatcher(ImmutableList.of("target", "/.git/"));
+    assertTrue(matcher.isExcluded("target"));
+    assertTrue(matcher.isExcluded("target/classes/Main.class"));
+    assertTrue(matcher.isExcluded(".git/HEAD"));
+    assertFalse(matcher.isExcluded("module/target/app.jar"));
+    assertFalse(matcher.isExcluded("targets/app.jar"));
+  }
+
+  @Test
+  public void testWildcards() {
+    DockerignoreMatcher matcher = new DockerignoreMatcher(ImmutableList.of("*.log", "**/*.iml",
+        "docs/?.md", "tmp[0-9]", "**/node_modules"));
+    assertTrue(matcher.isExcluded("build.log"));
+    assertFalse(matcher.isExcluded("logs/build.log"));
+    assertTrue(matcher.isExcluded("app.iml"));
+    assertTrue(matcher.isExcluded("a/b/app.iml"));
+    assertTrue(matcher.isExcluded("docs/a.md"));
+    assertFalse(matcher.isExcluded("docs/ab.md"));
+    assertTrue(matcher.isExcluded("tmp1/file"));
+    assertFalse(matcher.isExcluded("tmpa/file"));
+    assertTrue(matcher.isExcluded("web/node_modules/lib/index.js"));
+  }
+
+  @Test
+  public void testLastMatchWins() {
+    DockerignoreMatcher matcher = new DockerignoreMatcher(ImmutableList.of("# comment", "",
+        "*", "!target/app.jar", "!src", "src/**/*.tmp"));
+    assertTrue(matcher.isExcluded("README.md"));
+    assertFalse(matcher.isExcluded("target/app.jar"));
+    assertTrue(matcher.isExcluded("target/other.jar"));
+    assertFalse(matcher.isExcluded("src/main/java/Main.java"));
+    assertTrue(matcher.isExcluded("src/main/java/Main.tmp"));
+  }
+
+  @Test
+  public void testMayIncludeUnder() {
+    DockerignoreMatcher matcher = new DockerignoreMatcher(ImmutableList.of("target",
+        "!target/app.jar"));
+    assertTrue(matcher.mayIncludeUnder("target"));
+    assertFalse(matcher.mayIncludeUnder("target/classes"));
+    assertFalse(matcher.mayIncludeUnder("build"));
+  }
+}
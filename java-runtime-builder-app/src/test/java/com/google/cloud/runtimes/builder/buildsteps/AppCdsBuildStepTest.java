@@ -0,0 +1,154 @@
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.JAR;
+import static com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType.WAR;
+import static org.junit.Assert.assertEquals;
+
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.AppYaml;
+import com.google.cloud.runtimes.builder.config.domain.Artifact;
+import com.google.cloud.runtimes.builder.config.domain.Artifact.ArtifactType;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AppCdsBuildStep}.
+ */
+public class AppCdsBuildStepTest {
+
+  @Test
+  public void testNotEnabled() throws IOException, BuildStepException {
+    BuildContext buildContext = initSourceBuildContext(new RuntimeConfig(), JAR, "openjdk:17");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore, buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJdk8Skipped() throws IOException, BuildStepException {
+    BuildContext buildContext = initSourceBuildContext(appCdsConfig(), JAR,
+        "gcr.io/google-appengine/openjdk:8");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore, buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testUnknownJdkSkipped() throws IOException, BuildStepException {
+    BuildContext buildContext = initSourceBuildContext(appCdsConfig(), JAR,
+        "gcr.io/google-appengine/openjdk:latest");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore, buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testWarSkipped() throws IOException, BuildStepException {
+    BuildContext buildContext = initSourceBuildContext(appCdsConfig(), WAR, "jetty:11");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore, buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJdk11() throws IOException, BuildStepException {
+    BuildContext buildContext = initSourceBuildContext(appCdsConfig(), JAR, "openjdk:11-jre");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore
+        + "RUN (timeout -s TERM 30 java -Xshare:off -XX:DumpLoadedClassList=/app/app.classlist "
+        + "-jar $APP_DESTINATION || true) && java -Xshare:dump "
+        + "-XX:SharedClassListFile=/app/app.classlist -XX:SharedArchiveFile=/app/app.jsa "
+        + "-cp $APP_DESTINATION && rm /app/app.classlist\n"
+        + "ENV JAVA_USER_OPTS=\"$JAVA_USER_OPTS -XX:SharedArchiveFile=/app/app.jsa\"\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJdk17() throws IOException, BuildStepException {
+    BuildContext buildContext = initSourceBuildContext(appCdsConfig(), JAR, "openjdk:17");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore
+        + "RUN timeout -s TERM 30 java -XX:ArchiveClassesAtExit=/app/app.jsa "
+        + "-jar $APP_DESTINATION || true\n"
+        + "ENV JAVA_USER_OPTS=\"$JAVA_USER_OPTS -XX:SharedArchiveFile=/app/app.jsa\"\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJdk25() throws IOException, BuildStepException {
+    BuildContext buildContext = initSourceBuildContext(appCdsConfig(), JAR, "openjdk:25");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore
+        + "RUN timeout -s TERM 30 java -XX:AOTCacheOutput=/app/app.aot "
+        + "-jar $APP_DESTINATION || true\n"
+        + "ENV JAVA_USER_OPTS=\"$JAVA_USER_OPTS -XX:AOTCache=/app/app.aot\"\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testBootLayeredJarSkipped() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Main-Class: org.springframework.boot.loader.JarLauncher\n")
+        .withZipEntry("BOOT-INF/layers.idx", "- \"application\":\n  - \"BOOT-INF/classes/\"\n")
+        .build()
+        .build();
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(appCdsConfig());
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    buildContext.setDeployedArtifact(
+        Optional.of(Artifact.fromPath(workspace.resolve("app.jar"))));
+    buildContext.setRuntimeImage(Optional.of("openjdk:17"));
+    buildContext.getDockerfile().addStage("openjdk:17");
+    String dockerfileBefore = buildContext.getDockerfile().toString();
+
+    new AppCdsBuildStep().run(buildContext);
+
+    assertEquals(dockerfileBefore, buildContext.getDockerfile().toString());
+  }
+
+  private RuntimeConfig appCdsConfig() {
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setAppCds(true);
+    return runtimeConfig;
+  }
+
+  private BuildContext initSourceBuildContext(RuntimeConfig runtimeConfig,
+      ArtifactType artifactType, String runtimeImage) throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .build();
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    buildContext.setDeployedArtifact(
+        Optional.of(new Artifact(artifactType, workspace.resolve("target/app"))));
+    buildContext.setRuntimeImage(Optional.of(runtimeImage));
+    buildContext.getDockerfile().addStage(runtimeImage);
+    return buildContext;
+  }
+
+}
@@ -0,0 +1,220 @@
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.AppYaml;
+import com.google.cloud.runtimes.builder.config.domain.Artifact;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ContextPruningBuildStep}.
+ */
+public class ContextPruningBuildStepTest {
+
+  private static final String IDE_RULES = "**/*.iml\n**/.DS_Store\n";
+
+  @Test
+  public void testMavenSourceBuild() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file(".idea/workspace.xml").build()
+        .file("web/pom.xml").build()
+        .file("web/target/web.war").build()
+        .file("web/node_modules/react/package.json").build()
+        .file("api/pom.xml").build()
+        .build();
+    BuildContext buildContext = initBuildContext(workspace, pruningConfig(), false);
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n.idea\n" + IDE_RULES
+        + "web/target\nweb/node_modules\n", buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testGradleSourceBuild() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("settings.gradle").build()
+        .file(".gradle/7.6/checksums.lock").build()
+        .file("app/build.gradle").build()
+        .file("app/build/libs/app.jar").build()
+        .file("target/stale.jar").build()
+        .build();
+    BuildContext buildContext = initBuildContext(workspace, pruningConfig(), false);
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n" + IDE_RULES + ".gradle\napp/build\n",
+        buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testCustomBuildScript() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setPruneBuildContext(true);
+    runtimeConfig.setBuildScript("./build.sh");
+    BuildContext buildContext = initBuildContext(workspace, runtimeConfig, false);
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n" + IDE_RULES,
+        buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testPrebuiltArtifactInOutputDir() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("build.gradle").build()
+        .file("build/libs/app.jar").build()
+        .file(".git/HEAD").build()
+        .build();
+    BuildContext buildContext = initBuildContext(workspace, pruningConfig(), true);
+    buildContext.setDeployedArtifact(
+        Optional.of(Artifact.fromPath(workspace.resolve("build/libs/app.jar"))));
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n.git\n" + IDE_RULES
+        + "build\n!build/libs/app.jar\n",
+        buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testPrebuiltExplodedWarAtRoot() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("WEB-INF/web.xml").build()
+        .file(".hg/store/data").build()
+        .file(".vscode/settings.json").build()
+        .build();
+    BuildContext buildContext = initBuildContext(workspace, pruningConfig(), true);
+    buildContext.setDeployedArtifact(Optional.of(Artifact.fromPath(workspace)));
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n.hg\n.vscode\n" + IDE_RULES,
+        buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testExistingDockerignoreExceptions() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("target/generated-config/app.properties").build()
+        .file(".dockerignore").withContents("target\n!/target/generated-config\n").build()
+        .build();
+    BuildContext buildContext = initBuildContext(workspace, pruningConfig(), false);
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals(Arrays.asList("Dockerfile", ".dockerignore", "**/*.iml", "**/.DS_Store"),
+        buildContext.getDockerignore().getLines());
+  }
+
+  @Test
+  public void testPruningDisabled() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("target/app.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setPruneBuildContext(false);
+    BuildContext buildContext = initBuildContext(workspace, runtimeConfig, false);
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n", buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testPruningNotSet() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("target/app.jar").build()
+        .build();
+    BuildContext buildContext = initBuildContext(workspace, new RuntimeConfig(), false);
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n", buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testPrebuiltAllowlist() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app/WEB-INF/web.xml").build()
+        .file(".dockerignore").withContents("# local overrides\n**/*.bak\n!docs\n").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setDockerignoreAllowlist(true);
+    BuildContext buildContext = initBuildContext(workspace, runtimeConfig, true);
+    buildContext.setDeployedArtifact(
+        Optional.of(Artifact.fromPath(workspace.resolve("target/app"))));
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n*\n!target/app\n**/*.bak\n",
+        buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testAllowlistIgnoredForSourceBuild() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setDockerignoreAllowlist(true);
+    runtimeConfig.setPruneBuildContext(false);
+    BuildContext buildContext = initBuildContext(workspace, runtimeConfig, false);
+    buildContext.setDeployedArtifact(
+        Optional.of(Artifact.fromPath(workspace.resolve("target/app.jar"))));
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n", buildContext.getDockerignore().toString());
+  }
+
+  @Test
+  public void testPrebuiltAllowlistWithClassPath() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\nClass-Path: lib/a.jar\n")
+        .build()
+        .file("target/lib/a.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setDockerignoreAllowlist(true);
+    BuildContext buildContext = initBuildContext(workspace, runtimeConfig, true);
+    buildContext.setDeployedArtifact(
+        Optional.of(Artifact.fromPath(workspace.resolve("target/app.jar"))));
+
+    new ContextPruningBuildStep().run(buildContext);
+
+    assertEquals("Dockerfile\n.dockerignore\n*\n!target/lib\n!target/app.jar\n",
+        buildContext.getDockerignore().toString());
+  }
+
+  private RuntimeConfig pruningConfig() {
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setPruneBuildContext(true);
+    return runtimeConfig;
+  }
+
+  private BuildContext initBuildContext(Path workspace, RuntimeConfig runtimeConfig,
+      boolean disableSourceBuild) {
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    return new BuildContext(appYaml, workspace, disableSourceBuild);
+  }
+
+}
@@ -10,7 +10,10 @@ import com.google.cloud.runtimes.builder.Constants;
 import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
-import com.google.cloud.runtimes.builder.util.StringLineAppender;
+import com.google.cloud.runtimes.builder.config.domain.BuildTool;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
+import com.google.cloud.runtimes.builder.dockerfile.Dockerfile;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -20,6 +23,7 @@ import org.mockito.MockitoAnnotations;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Optional;
 
 /**
@@ -28,20 +32,23 @@ import java.util.Optional;
 public class GradleBuildStepTest {
 
   private GradleBuildStep gradleBuildStep;
-  private StringLineAppender dockerfileBuilder;
+  private Dockerfile dockerfileBuilder;
   private String gradleBuilderImage;
+  private RuntimeConfig runtimeConfig;
 
   @Mock private BuildContext buildContext;
 
   @Before
   public void before() throws IOException {
-    dockerfileBuilder = new StringLineAppender();
+    dockerfileBuilder = new Dockerfile();
     gradleBuilderImage = "gcr.io/foo/gradle";
+    runtimeConfig = new RuntimeConfig();
 
     MockitoAnnotations.initMocks(this);
     when(buildContext.getDockerfile()).thenReturn(dockerfileBuilder);
+    when(buildContext.getRuntimeConfig()).thenReturn(runtimeConfig);
 
-    gradleBuildStep = new GradleBuildStep(gradleBuilderImage);
+    gradleBuildStep = new GradleBuildStep(gradleBuilderImage, new CacheMounts(false, "shared"));
   }
 
   // common assertions
@@ -57,11 +64,12 @@ public class GradleBuildStepTest {
         .file("gradlew").setIsExecutable(true).build()
         .build();
     when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
 
     gradleBuildStep.run(buildContext);
 
     assertBuild();
-    assertTrue(dockerfileBuilder.toString().contains("RUN ./gradlew build\n"));
+    assertTrue(dockerfileBuilder.toString().contains("RUN ./gradlew assemble\n"));
   }
 
   @Test
@@ -69,11 +77,202 @@ public class GradleBuildStepTest {
     Path workspace = new TestWorkspaceBuilder()
         .build();
     when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
 
     gradleBuildStep.run(buildContext);
 
     assertBuild();
-    assertTrue(dockerfileBuilder.toString().contains("RUN gradle build\n"));
+    assertTrue(dockerfileBuilder.toString().contains("RUN gradle assemble\n"));
+  }
+
+  @Test
+  public void testRunWithCachedDependencies() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("gradlew").setIsExecutable(true).build()
+        .file("gradle/wrapper/gradle-wrapper.properties").build()
+        .file("settings.gradle").build()
+        .file("build.gradle").build()
+        .file("web/build.gradle").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    when(buildContext.findBuildFiles(BuildTool.GRADLE))
+        .thenReturn(Arrays.asList(Paths.get("build.gradle"), Paths.get("web/build.gradle")));
+    runtimeConfig.setCacheDependencies(true);
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    String dockerfile = dockerfileBuilder.toString();
+    assertTrue(dockerfile.startsWith("FROM " + gradleBuilderImage + " as "
+        + Constants.DOCKERFILE_BUILD_STAGE + "\n"
+        + "COPY gradlew gradlew\n"
+        + "COPY gradle/wrapper gradle/wrapper\n"
+        + "COPY settings.gradle settings.gradle\n"
+        + "COPY build.gradle build.gradle\n"
+        + "COPY web/build.gradle web/build.gradle\n"
+        + "RUN echo '"));
+    assertTrue(dockerfile.contains(" && ./gradlew --init-script /tmp/resolve-dependencies.gradle "
+        + "resolveDependencies\n"
+        + "ADD . .\n"
+        + "RUN ./gradlew assemble\n"));
+  }
+
+  @Test
+  public void testRunWithConfiguredTask() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setGradleTask("bootJar");
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN gradle bootJar\n"));
+  }
+
+  @Test
+  public void testRunWithPerformanceProfile() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildProfile("performance");
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN gradle --no-daemon "
+        + "--max-workers=$(nproc) --parallel --build-cache assemble\n"));
+  }
+
+  @Test
+  public void testRunWithPerformanceProfileAndRecentWrapper()
+      throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("gradlew").setIsExecutable(true).build()
+        .file("gradle/wrapper/gradle-wrapper.properties").withContents("distributionUrl=https\\://"
+            + "services.gradle.org/distributions/gradle-6.8.3-bin.zip\n").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildProfile("performance");
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN ./gradlew --no-daemon "
+        + "--max-workers=$(nproc) --parallel --build-cache --configuration-cache assemble\n"));
+  }
+
+  @Test
+  public void testRunWithPerformanceProfileAndOldWrapper()
+      throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("gradlew").setIsExecutable(true).build()
+        .file("gradle/wrapper/gradle-wrapper.properties").withContents("distributionUrl=https\\://"
+            + "services.gradle.org/distributions/gradle-5.6.4-all.zip\n").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildProfile("performance");
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN ./gradlew --no-daemon "
+        + "--max-workers=$(nproc) --parallel --build-cache assemble\n"));
+  }
+
+  @Test
+  public void testRunWithPerformanceProfileOptOuts() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildProfile("performance");
+    runtimeConfig.setGradleParallel(false);
+    runtimeConfig.setGradleBuildCache(false);
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN gradle --no-daemon "
+        + "--max-workers=$(nproc) assemble\n"));
+  }
+
+  @Test
+  public void testRunWithIndividualSettings() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setGradleParallel(true);
+    runtimeConfig.setGradleConfigurationCache(true);
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString()
+        .contains("RUN gradle --parallel --configuration-cache assemble\n"));
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testRunWithInvalidProfile() throws IOException, BuildStepException {
+    runtimeConfig.setBuildProfile("fastest");
+    gradleBuildStep.run(buildContext);
+  }
+
+  @Test
+  public void testRunWithArtifactInSubproject() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("settings.gradle").withContents("rootProject.name = 'shop'\n"
+            + "include 'core',\n"
+            + "        ':services'\n"
+            + "include(\":services:web\")\n").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setArtifact("services/web/build/libs/web.jar");
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString()
+        .contains("RUN gradle --configure-on-demand :services:web:assemble\n"));
+  }
+
+  @Test
+  public void testRunWithQualifiedTaskInSubproject() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("settings.gradle").withContents("include 'web'\n").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setArtifact("web/build/libs/web.jar");
+    runtimeConfig.setGradleTask(":web:bootJar");
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString()
+        .contains("RUN gradle --configure-on-demand :web:bootJar\n"));
+  }
+
+  @Test
+  public void testRunWithArtifactInRootProject() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("settings.gradle").withContents("include 'web'\n").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setArtifact("build/libs/app.jar");
+
+    gradleBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN gradle assemble\n"));
   }
 
 }
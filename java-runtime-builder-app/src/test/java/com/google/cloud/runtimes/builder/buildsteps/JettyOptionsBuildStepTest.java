@@ -38,14 +38,18 @@ public class JettyOptionsBuildStepTest {
     JettyOptionsBuildStep buildStep = new JettyOptionsBuildStep();
     buildStep.run(ctx);
 
-    String expected = dockerfileBefore + JettyOptionsBuildStep.JETTY_QUICKSTART_COMMAND + "\n";
+    String expected = dockerfileBefore + "RUN " + JettyOptionsBuildStep.JETTY_QUICKSTART_COMMAND
+        + "\n";
     assertEquals(expected, ctx.getDockerfile().toString());
   }
 
   private BuildContext initBuildContext(RuntimeConfig runtimeConfig) throws IOException {
     AppYaml appYaml = new AppYaml();
     appYaml.setRuntimeConfig(runtimeConfig);
-    return new BuildContext(appYaml, new TestWorkspaceBuilder().build(), false);
+    BuildContext buildContext = new BuildContext(appYaml, new TestWorkspaceBuilder().build(),
+        false);
+    buildContext.getDockerfile().addStage("jetty:9");
+    return buildContext;
   }
 
 }
@@ -1,5 +1,6 @@
 package com.google.cloud.runtimes.builder.buildsteps;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
@@ -10,7 +11,10 @@ import com.google.cloud.runtimes.builder.Constants;
 import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
-import com.google.cloud.runtimes.builder.util.StringLineAppender;
+import com.google.cloud.runtimes.builder.config.domain.BuildTool;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
+import com.google.cloud.runtimes.builder.dockerfile.Dockerfile;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -20,6 +24,7 @@ import org.mockito.MockitoAnnotations;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Optional;
 
 /**
@@ -28,20 +33,23 @@ import java.util.Optional;
 public class MavenBuildStepTest {
 
   private MavenBuildStep mavenBuildStep;
-  private StringLineAppender dockerfileBuilder;
+  private Dockerfile dockerfileBuilder;
   private String mavenBuilderImage;
+  private RuntimeConfig runtimeConfig;
 
   @Mock private BuildContext buildContext;
 
   @Before
   public void before() throws IOException {
-    dockerfileBuilder = new StringLineAppender();
+    dockerfileBuilder = new Dockerfile();
     mavenBuilderImage = "gcr.io/foo/maven";
+    runtimeConfig = new RuntimeConfig();
 
     MockitoAnnotations.initMocks(this);
     when(buildContext.getDockerfile()).thenReturn(dockerfileBuilder);
+    when(buildContext.getRuntimeConfig()).thenReturn(runtimeConfig);
 
-    mavenBuildStep = new MavenBuildStep(mavenBuilderImage);
+    mavenBuildStep = new MavenBuildStep(mavenBuilderImage, new CacheMounts(false, "shared"));
   }
 
   // common assertions
@@ -57,6 +65,7 @@ public class MavenBuildStepTest {
         .file("mvnw").setIsExecutable(true).build()
         .build();
     when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
 
     mavenBuildStep.run(buildContext);
 
@@ -70,6 +79,127 @@ public class MavenBuildStepTest {
     Path workspace = new TestWorkspaceBuilder()
         .build();
     when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+
+    mavenBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN mvn -B -DskipTests clean install\n"));
+  }
+
+  @Test
+  public void testRunWithCachedDependencies() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("mvnw").setIsExecutable(true).build()
+        .file(".mvn/wrapper/maven-wrapper.properties").build()
+        .file("pom.xml").build()
+        .file("web/pom.xml").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    when(buildContext.findBuildFiles(BuildTool.MAVEN))
+        .thenReturn(Arrays.asList(Paths.get("pom.xml"), Paths.get("web/pom.xml")));
+    runtimeConfig.setCacheDependencies(true);
+
+    mavenBuildStep.run(buildContext);
+
+    assertBuild();
+    assertEquals("FROM " + mavenBuilderImage + " as " + Constants.DOCKERFILE_BUILD_STAGE + "\n"
+        + "COPY pom.xml pom.xml\n"
+        + "COPY web/pom.xml web/pom.xml\n"
+        + "COPY mvnw mvnw\n"
+        + "COPY .mvn .mvn\n"
+        + "RUN ./mvnw -B org.apache.maven.plugins:maven-dependency-plugin:3.1.2:go-offline\n"
+        + "ADD . .\n"
+        + "RUN ./mvnw -B -DskipTests clean install\n", dockerfileBuilder.toString());
+  }
+
+  @Test
+  public void testRunWithCacheMounts() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    mavenBuildStep = new MavenBuildStep(mavenBuilderImage, new CacheMounts(true, "locked"));
+
+    mavenBuildStep.run(buildContext);
+
+    assertEquals("# syntax=docker/dockerfile:1\n"
+        + "FROM " + mavenBuilderImage + " as " + Constants.DOCKERFILE_BUILD_STAGE + "\n"
+        + "ADD . .\n"
+        + "RUN --mount=type=cache,target=/root/.m2,sharing=locked mvn -B -DskipTests clean "
+        + "install\n", dockerfileBuilder.toString());
+  }
+
+  @Test
+  public void testRunWithPerformanceProfile() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildProfile("performance");
+
+    mavenBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN mvn -B -Dmaven.artifact.threads=8 "
+        + "-T 1C -Dmaven.test.skip=true -Dmaven.javadoc.skip=true -Dmaven.source.skip=true "
+        + "-Denforcer.skip=true -Dcheckstyle.skip=true clean package\n"));
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testRunWithInvalidProfile() throws IOException, BuildStepException {
+    runtimeConfig.setBuildProfile("fastest");
+    mavenBuildStep.run(buildContext);
+  }
+
+  @Test
+  public void testRunWithArtifactInModule() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").withContents("<project><modules><module>core</module>"
+            + "<module>services</module></modules></project>").build()
+        .file("core/pom.xml").withContents("<project></project>").build()
+        .file("services/pom.xml").withContents("<project><modules><module>web/pom.xml</module>"
+            + "</modules></project>").build()
+        .file("services/web/pom.xml").withContents("<project></project>").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setArtifact("services/web/target/web.war");
+
+    mavenBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString()
+        .contains("RUN mvn -B -pl services/web -am -DskipTests clean install\n"));
+  }
+
+  @Test
+  public void testRunWithArtifactInRootProject() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").withContents("<project><modules><module>core</module></modules>"
+            + "<profiles><profile><modules><module>target</module></modules></profile>"
+            + "</profiles></project>").build()
+        .file("core/pom.xml").withContents("<project></project>").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setArtifact("target/app.jar");
+
+    mavenBuildStep.run(buildContext);
+
+    assertBuild();
+    assertTrue(dockerfileBuilder.toString().contains("RUN mvn -B -DskipTests clean install\n"));
+  }
+
+  @Test
+  public void testRunWithUnreadableReactor() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").withContents("<project><modules>").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setArtifact("web/target/web.war");
 
     mavenBuildStep.run(buildContext);
 
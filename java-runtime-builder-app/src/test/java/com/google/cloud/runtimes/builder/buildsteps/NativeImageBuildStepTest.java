@@ -0,0 +1,129 @@
+package com.google.cloud.runtimes.builder.buildsteps;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
+import com.google.cloud.runtimes.builder.config.domain.AppYaml;
+import com.google.cloud.runtimes.builder.config.domain.BuildContext;
+import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * Unit tests for {@link NativeImageBuildStep} and {@link NativeRuntimeImageBuildStep}.
+ */
+public class NativeImageBuildStepTest {
+
+  @Mock private JdkServerLookup jdkServerLookup;
+
+  private NativeImageBuildStep nativeImageBuildStep;
+  private NativeRuntimeImageBuildStep nativeRuntimeImageBuildStep;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(jdkServerLookup.lookupNativeBuildImage()).thenReturn("native_build_image");
+    when(jdkServerLookup.lookupNativeImage()).thenReturn("native_image");
+
+    nativeImageBuildStep = new NativeImageBuildStep(jdkServerLookup, new ArtifactResolver());
+    nativeRuntimeImageBuildStep = new NativeRuntimeImageBuildStep(jdkServerLookup);
+  }
+
+  @Test
+  public void testPrebuiltJar() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Main-Class: com.example.Main\nClass-Path: lib/dep.jar\n")
+        .withZipEntry("META-INF/native-image/reflect-config.json", "[]")
+        .build()
+        .file("lib/dep.jar").build()
+        .build();
+    BuildContext buildContext = new BuildContext(new AppYaml(), workspace, false);
+
+    nativeImageBuildStep.run(buildContext);
+    nativeRuntimeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM native_build_image as native\n"
+        + "WORKDIR /native\n"
+        + "COPY ./lib ./lib\n"
+        + "COPY ./app.jar app.jar\n"
+        + "RUN native-image --no-fallback -jar app.jar -o app\n"
+        + "\n"
+        + "FROM native_image\n"
+        + "WORKDIR /app\n"
+        + "COPY --from=native /native/app /app/app\n"
+        + "ENTRYPOINT [\"/app/app\"]\n", buildContext.getDockerfile().toString());
+    assertEquals(workspace.resolve("app.jar"), buildContext.getDeployedArtifact().get().getPath());
+    assertEquals(Optional.of("native_image"), buildContext.getRuntimeImage());
+  }
+
+  @Test
+  public void testSourceBuild() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setArtifact("target/app.jar");
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+
+    nativeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM native_build_image as native\n"
+        + "WORKDIR /native\n"
+        + "COPY --from=builder ./target/app.jar app.jar\n"
+        + "RUN if jar tf app.jar | grep -q '^BOOT-INF/'; then echo 'runtime_config.native_image "
+        + "cannot compile a Spring Boot executable JAR, whose classes and libraries are nested "
+        + "under BOOT-INF/. Deploy a plain JAR, such as the one built by the jar task of gradle, "
+        + "or build the native executable with the native support of Spring Boot.' >&2; exit 1; "
+        + "fi\n"
+        + "RUN native-image --no-fallback -jar app.jar -o app\n", buildContext.getDockerfile().toString());
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testPrebuiltSpringBootJar() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Main-Class: org.springframework.boot.loader.JarLauncher\n"
+            + "Start-Class: com.example.Application\n")
+        .withZipEntry("BOOT-INF/classes/com/example/Application.class", "")
+        .build()
+        .build();
+
+    nativeImageBuildStep.run(new BuildContext(new AppYaml(), workspace, false));
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testWarArtifact() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.war").build()
+        .build();
+
+    nativeImageBuildStep.run(new BuildContext(new AppYaml(), workspace, false));
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testServerConfigured() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setServer("jetty");
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+
+    nativeImageBuildStep.run(new BuildContext(appYaml, workspace, false));
+  }
+
+}
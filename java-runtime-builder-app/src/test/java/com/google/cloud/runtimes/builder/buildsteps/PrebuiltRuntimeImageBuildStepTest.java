@@ -1,6 +1,7 @@
 package com.google.cloud.runtimes.builder.buildsteps;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -11,11 +12,15 @@ import com.google.cloud.runtimes.builder.config.domain.AppYaml;
 import com.google.cloud.runtimes.builder.config.domain.BetaSettings;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
 import com.google.cloud.runtimes.builder.config.domain.JdkServerLookup;
+import com.google.cloud.runtimes.builder.config.domain.ManualScaling;
+import com.google.cloud.runtimes.builder.config.domain.Resources;
 import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
 import com.google.cloud.runtimes.builder.exception.ArtifactNotFoundException;
 import com.google.cloud.runtimes.builder.exception.TooManyArtifactsException;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -36,7 +41,8 @@ public class PrebuiltRuntimeImageBuildStepTest {
     MockitoAnnotations.initMocks(this);
     compatImageName = "test-compat-image";
     prebuiltRuntimeImageBuildStep
-        = new PrebuiltRuntimeImageBuildStep(jdkServerLookup, compatImageName);
+        = new PrebuiltRuntimeImageBuildStep(jdkServerLookup, new ArtifactResolver(),
+            compatImageName);
   }
 
   @Test
@@ -151,6 +157,55 @@ public class PrebuiltRuntimeImageBuildStepTest {
     prebuiltRuntimeImageBuildStep.run(buildContext);
   }
 
+  @Test
+  public void testArtifactInOutputDir() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app-1.0.jar").build()
+        .file("target/app-1.0-sources.jar").build()
+        .build();
+    BuildContext buildContext = new BuildContext(new AppYaml(), workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    String expected = "FROM test_image\n"
+        + "COPY ./target/app-1.0.jar $APP_DESTINATION\n";
+    assertEquals(expected, buildContext.getDockerfile().toString());
+  }
+
+  @Test(expected = TooManyArtifactsException.class)
+  public void testTiedArtifactsInOutputDirs() throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("api/pom.xml").build()
+        .file("api/target/api.jar").build()
+        .file("web/pom.xml").build()
+        .file("web/target/web.war").build()
+        .build();
+    BuildContext buildContext = new BuildContext(new AppYaml(), workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+  }
+
+  @Test
+  public void testArtifactInOutputDirExcludedByDockerignore()
+      throws IOException, BuildStepException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file(".dockerignore").withContents("target/app-old.jar\n").build()
+        .file("target/app-old.jar").build()
+        .file("target/app.jar").build()
+        .build();
+    BuildContext buildContext = new BuildContext(new AppYaml(), workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    String expected = "FROM test_image\n"
+        + "COPY ./target/app.jar $APP_DESTINATION\n";
+    assertEquals(expected, buildContext.getDockerfile().toString());
+  }
+
   @Test(expected = ArtifactNotFoundException.class)
   public void testUnrecognizedArtifact() throws IOException, BuildStepException {
     String artifact = "foo.xyz";
@@ -160,6 +215,7 @@ public class PrebuiltRuntimeImageBuildStepTest {
     BuildContext mockContext = mock(BuildContext.class);
     when(mockContext.getRuntimeConfig()).thenReturn(new RuntimeConfig());
     when(mockContext.getWorkspaceDir()).thenReturn(workspace);
+    when(mockContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
 
     assertEquals(artifact, prebuiltRuntimeImageBuildStep.getArtifact(mockContext));
 
@@ -264,4 +320,334 @@ public class PrebuiltRuntimeImageBuildStepTest {
     assertTrue(dockerfile.startsWith("FROM " + compatImageName));
     assertTrue(dockerfile.contains("COPY ./ /app/"));
   }
+
+  @Test(expected = BuildStepException.class)
+  public void testCorruptJarArtifact() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").withContents("not a zip archive").build()
+        .build();
+
+    BuildContext buildContext = new BuildContext(new AppYaml(), workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+  }
+
+  @Test
+  public void testSpringBootLayeredJar() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Main-Class: org.springframework.boot.loader.JarLauncher\n")
+        .withZipEntry("BOOT-INF/layers.idx", "- \"dependencies\":\n  - \"BOOT-INF/lib/\"\n"
+            + "- \"spring-boot-loader\":\n  - \"org/\"\n"
+            + "- \"snapshot-dependencies\":\n"
+            + "- \"application\":\n  - \"BOOT-INF/classes/\"\n")
+        .build()
+        .build();
+    BuildContext buildContext = new BuildContext(new AppYaml(), workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    String expected = "FROM test_image as boot-layers\n"
+        + "WORKDIR /layers\n"
+        + "COPY ./app.jar app.jar\n"
+        + "RUN java -Djarmode=layertools -jar app.jar extract && rm app.jar\n"
+        + "\n"
+        + "FROM test_image\n"
+        + "COPY --from=boot-layers /layers/dependencies/ /app/\n"
+        + "COPY --from=boot-layers /layers/spring-boot-loader/ /app/\n"
+        + "COPY --from=boot-layers /layers/snapshot-dependencies/ /app/\n"
+        + "COPY --from=boot-layers /layers/application/ /app/\n"
+        + "CMD [\"java\", \"-cp\", \"/app\", "
+        + "\"org.springframework.boot.loader.JarLauncher\"]\n";
+    assertEquals(expected, buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJarWithoutLayerIndex() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\nMain-Class: Main\n")
+        .build()
+        .build();
+    BuildContext buildContext = new BuildContext(new AppYaml(), workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM test_image\nCOPY ./app.jar $APP_DESTINATION\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testSplitExplodedWarLayers() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app/WEB-INF/web.xml").build()
+        .file("app/WEB-INF/lib/dependency.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setArtifact("app");
+    runtimeConfig.setSplitWarLayers(true);
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupServerImage(null, null)).thenReturn("test_image");
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_jdk_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    String expected = "FROM test_jdk_image as war\n"
+        + "COPY ./app /war\n"
+        + "RUN mkdir -p /war-lib/WEB-INF && if [ -d /war/WEB-INF/lib ]; "
+        + "then mv /war/WEB-INF/lib /war-lib/WEB-INF/; fi\n"
+        + "\n"
+        + "FROM test_image\n"
+        + "COPY --from=war /war-lib $APP_DESTINATION_EXPLODED_WAR\n"
+        + "COPY --from=war /war $APP_DESTINATION_EXPLODED_WAR\n";
+    assertEquals(expected, buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJarWithClassPath() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Main-Class: Main\nClass-Path: lib/a.jar lib/b.jar\n")
+        .build()
+        .file("target/lib/a.jar").build()
+        .file("target/lib/b.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setArtifact("target/app.jar");
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM test_image\n"
+        + "COPY ./target/lib /app/lib\n"
+        + "COPY ./target/app.jar $APP_DESTINATION\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJarWithClassPathInSeveralDirectories() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\nMain-Class: Main\n"
+            + "Class-Path: a.jar lib/b.jar lib/c.jar ext/d.jar e.jar\n")
+        .build()
+        .file("target/a.jar").build()
+        .file("target/lib/b.jar").build()
+        .file("target/lib/c.jar").build()
+        .file("target/ext/d.jar").build()
+        .file("target/e.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setArtifact("target/app.jar");
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM test_image\n"
+        + "COPY ./target/lib /app/lib\n"
+        + "COPY ./target/ext /app/ext\n"
+        + "COPY ./target/a.jar ./target/e.jar /app/\n"
+        + "COPY ./target/app.jar $APP_DESTINATION\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJarWithJlink() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Main-Class: Main\nClass-Path: lib/a.jar\n")
+        .build()
+        .file("target/lib/a.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setArtifact("target/app.jar");
+    runtimeConfig.setJlink(true);
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("jdk:17");
+    when(jdkServerLookup.lookupJlinkImage()).thenReturn("jlink_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM jdk:17 as jre\n"
+        + "COPY ./target/lib /app/lib\n"
+        + "COPY ./target/app.jar /app/app.jar\n"
+        + "RUN jdeps -q --ignore-missing-deps --multi-release 17 --print-module-deps "
+        + "$(find /app -name '*.jar') > /jre-modules && jlink --add-modules $(cat /jre-modules) "
+        + "--strip-debug --no-man-pages --no-header-files --output /opt/java\n"
+        + "\n"
+        + "FROM jlink_image\n"
+        + "COPY --from=jre /opt/java /opt/java\n"
+        + "ENV JAVA_HOME=/opt/java\n"
+        + "ENV PATH=/opt/java/bin:$PATH\n"
+        + "COPY ./target/lib /app/lib\n"
+        + "COPY ./target/app.jar /app/app.jar\n"
+        + "CMD [\"java\", \"-jar\", \"/app/app.jar\"]\n",
+        buildContext.getDockerfile().toString());
+    assertEquals(Optional.of("jlink_image"), buildContext.getRuntimeImage());
+  }
+
+  @Test
+  public void testJlinkWithResources() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setJlink(true);
+    Resources resources = new Resources();
+    resources.setCpu(1);
+    resources.setMemoryGb(2);
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    appYaml.setResources(resources);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("jdk:17");
+    when(jdkServerLookup.lookupJlinkImage()).thenReturn("jlink_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    // the jlink image has no entrypoint that reads the heap and collector variables
+    String dockerfile = buildContext.getDockerfile().toString();
+    assertTrue(dockerfile.contains("FROM jlink_image\n"
+        + "ENV JAVA_TOOL_OPTIONS=\"-Xmx1536m -XX:+UseSerialGC\"\n"));
+    assertFalse(dockerfile.contains("JAVA_HEAP_OPTS"));
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testJlinkWithJdk8() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setJlink(true);
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("gcr.io/google-appengine/openjdk:8");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+  }
+
+  @Test
+  public void testJarWithResources() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").build()
+        .build();
+    Resources resources = new Resources();
+    resources.setCpu(1);
+    resources.setMemoryGb(2);
+    AppYaml appYaml = new AppYaml();
+    appYaml.setResources(resources);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM test_image\n"
+        + "ENV JAVA_HEAP_OPTS=\"-Xmx1536m\"\n"
+        + "ENV JAVA_GC_OPTS=\"-XX:+UseSerialGC\"\n"
+        + "COPY ./app.jar $APP_DESTINATION\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testWarWithResourcesAndManualScaling() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.war").build()
+        .build();
+    Resources resources = new Resources();
+    resources.setCpu(4);
+    resources.setMemoryGb(8);
+    AppYaml appYaml = new AppYaml();
+    appYaml.setResources(resources);
+    appYaml.setManualScaling(new ManualScaling());
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupServerImage(null, null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    assertEquals("FROM test_image\n"
+        + "ENV JAVA_HEAP_OPTS=\"-Xms6144m -Xmx6144m\"\n"
+        + "ENV JAVA_GC_OPTS=\"-XX:+UseParallelGC -XX:ParallelGCThreads=4\"\n"
+        + "COPY ./app.war $APP_DESTINATION\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test
+  public void testJarWithJvmProfile() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setJvmProfile("latency");
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    appYaml.setManualScaling(new ManualScaling());
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    // the default instance has 1 CPU and 0.6 GB of memory
+    assertEquals("FROM test_image\n"
+        + "ENV JAVA_HEAP_OPTS=\"-Xmx307m\"\n"
+        + "ENV JAVA_GC_OPTS=\"-XX:+UseSerialGC\"\n"
+        + "COPY ./app.jar $APP_DESTINATION\n",
+        buildContext.getDockerfile().toString());
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testJarWithInvalidJvmProfile() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setJvmProfile("fastest");
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+  }
+
+  @Test
+  public void testExplodedWarWithCompat() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.war").build()
+        .build();
+    RuntimeConfig runtimeConfig = new RuntimeConfig();
+    runtimeConfig.setExplodeWar(true);
+    BetaSettings betaSettings = new BetaSettings();
+    betaSettings.setEnableAppEngineApis(true);
+    AppYaml appYaml = new AppYaml();
+    appYaml.setRuntimeConfig(runtimeConfig);
+    appYaml.setBetaSettings(betaSettings);
+    BuildContext buildContext = new BuildContext(appYaml, workspace, false);
+    when(jdkServerLookup.lookupJdkImage(null)).thenReturn("test_jdk_image");
+
+    prebuiltRuntimeImageBuildStep.run(buildContext);
+
+    String expected = "FROM test_jdk_image as war\n"
+        + "COPY ./app.war /app.war\n"
+        + "RUN mkdir /war && cd /war && jar xf /app.war && rm /app.war\n"
+        + "\n"
+        + "FROM " + compatImageName + "\n"
+        + "COPY --from=war /war /app/\n";
+    assertEquals(expected, buildContext.getDockerfile().toString());
+  }
 }
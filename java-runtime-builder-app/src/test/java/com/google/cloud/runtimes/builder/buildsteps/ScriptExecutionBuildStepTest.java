@@ -1,11 +1,18 @@
 package com.google.cloud.runtimes.builder.buildsteps;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
 import com.google.cloud.runtimes.builder.buildsteps.base.BuildStepException;
 import com.google.cloud.runtimes.builder.config.domain.BuildContext;
-import com.google.cloud.runtimes.builder.util.StringLineAppender;
+import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
+import com.google.cloud.runtimes.builder.config.domain.WorkspaceIndex;
+import com.google.cloud.runtimes.builder.dockerfile.Dockerfile;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -17,27 +24,112 @@ import org.mockito.MockitoAnnotations;
  */
 public class ScriptExecutionBuildStepTest {
 
+  private static final String BUILDER_IMAGE = "test_builder_image";
+
   @Mock private BuildContext buildContext;
-  private StringLineAppender dockerfileBuilder;
+  private Dockerfile dockerfileBuilder;
+  private RuntimeConfig runtimeConfig;
 
   @Before
   public void before() {
-    dockerfileBuilder = new StringLineAppender();
+    dockerfileBuilder = new Dockerfile();
+    runtimeConfig = new RuntimeConfig();
 
     MockitoAnnotations.initMocks(this);
     when(buildContext.getDockerfile()).thenReturn(dockerfileBuilder);
+    when(buildContext.getRuntimeConfig()).thenReturn(runtimeConfig);
   }
 
   @Test
   public void testRun() throws BuildStepException {
     String buildCommand = "echo $VAR; cd /dir; mvn package";
 
-    new ScriptExecutionBuildStep(buildCommand).run(buildContext);
+    new ScriptExecutionBuildStep(buildCommand, BUILDER_IMAGE, new CacheMounts(false, "shared"))
+        .run(buildContext);
     String dockerfileContents = dockerfileBuilder.toString();
 
     assertTrue(dockerfileContents.contains("RUN " + buildCommand + '\n'));
-    assertTrue(dockerfileContents.contains("FROM " + ScriptExecutionBuildStep.BUILD_IMAGE
+    assertTrue(dockerfileContents.contains("FROM " + BUILDER_IMAGE
         + " as builder\n"));
   }
 
+  @Test
+  public void testRunWithCacheMounts() throws BuildStepException {
+    String buildCommand = "./gradlew assemble";
+
+    new ScriptExecutionBuildStep(buildCommand, BUILDER_IMAGE, new CacheMounts(true, "shared"))
+        .run(buildContext);
+    String dockerfileContents = dockerfileBuilder.toString();
+
+    assertTrue(dockerfileContents.startsWith("# syntax=docker/dockerfile:1\n"));
+    assertTrue(dockerfileContents.contains("RUN --mount=type=cache,target=/root/.m2,sharing=shared "
+        + "--mount=type=cache,target=/root/.gradle,sharing=shared " + buildCommand + '\n'));
+  }
+
+  @Test
+  public void testRunWithInputsAndPrefetch() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("deps.lock").build()
+        .file("config/versions.toml").build()
+        .build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildScriptInputs(" deps.lock  ./config/versions.toml ");
+    runtimeConfig.setBuildScriptPrefetch("./fetch-deps.sh");
+
+    new ScriptExecutionBuildStep("./build.sh", BUILDER_IMAGE, new CacheMounts(false, "shared"))
+        .run(buildContext);
+
+    assertEquals("FROM " + BUILDER_IMAGE + " as builder\n"
+        + "COPY deps.lock deps.lock\n"
+        + "COPY config/versions.toml config/versions.toml\n"
+        + "RUN ./fetch-deps.sh\n"
+        + "ADD . .\n"
+        + "RUN ./build.sh\n", dockerfileBuilder.toString());
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testRunWithMissingInput() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder().build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildScriptInputs("deps.lock");
+
+    new ScriptExecutionBuildStep("./build.sh", BUILDER_IMAGE, new CacheMounts(false, "shared"))
+        .run(buildContext);
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testRunWithInputOutsideWorkspace() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder().build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildScriptInputs("../deps.lock");
+
+    new ScriptExecutionBuildStep("./build.sh", BUILDER_IMAGE, new CacheMounts(false, "shared"))
+        .run(buildContext);
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testRunWithWorkspaceRootInput() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder().file("deps.lock").build().build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildScriptInputs("deps.lock ./");
+
+    new ScriptExecutionBuildStep("./build.sh", BUILDER_IMAGE, new CacheMounts(false, "shared"))
+        .run(buildContext);
+  }
+
+  @Test(expected = BuildStepException.class)
+  public void testRunWithGlobInput() throws BuildStepException, IOException {
+    Path workspace = new TestWorkspaceBuilder().file("deps.lock").build().build();
+    when(buildContext.getWorkspaceDir()).thenReturn(workspace);
+    when(buildContext.getWorkspaceIndex()).thenReturn(WorkspaceIndex.build(workspace));
+    runtimeConfig.setBuildScriptInputs("*.lock");
+
+    new ScriptExecutionBuildStep("./build.sh", BUILDER_IMAGE, new CacheMounts(false, "shared"))
+        .run(buildContext);
+  }
+
 }
@@ -44,7 +44,8 @@ public class SourceBuildRuntimeImageBuildStepTest {
     when(jdkServerLookup.lookupServerImage(eq(runtimeConfig.getJdk()),
         eq(runtimeConfig.getServer()))).thenReturn(TEST_SERVER_RUNTIME);
 
-    buildStep = new SourceBuildRuntimeImageBuildStep(jdkServerLookup, TEST_COMPAT_RUNTIME);
+    buildStep = new SourceBuildRuntimeImageBuildStep(jdkServerLookup, new ArtifactResolver(),
+        TEST_COMPAT_RUNTIME);
   }
 
   private BuildContext initBuildContext() throws IOException {
@@ -70,4 +71,54 @@ public class SourceBuildRuntimeImageBuildStepTest {
         ctx.getDockerfile().toString());
   }
 
+  @Test
+  public void testWithSplitWarLayers() throws IOException, BuildStepException {
+    String artifact = "path/to/artifact.war";
+    BuildContext ctx = initBuildContext();
+    ctx.getRuntimeConfig().setArtifact(artifact);
+    ctx.getRuntimeConfig().setSplitWarLayers(true);
+    buildStep.run(ctx);
+
+    assertEquals("FROM " + TEST_JDK_RUNTIME + " as war\n"
+        + "COPY ./" + artifact + " /app.war\n"
+        + "RUN mkdir /war && cd /war && jar xf /app.war && rm /app.war "
+        + "&& mkdir -p /war-lib/WEB-INF && if [ -d /war/WEB-INF/lib ]; then mv /war/WEB-INF/lib /war-lib/WEB-INF/; fi\n"
+        + "\n"
+        + "FROM " + TEST_SERVER_RUNTIME + "\n"
+        + "COPY --from=war /war-lib $APP_DESTINATION_EXPLODED_WAR\n"
+        + "COPY --from=war /war $APP_DESTINATION_EXPLODED_WAR\n",
+        ctx.getDockerfile().toString());
+  }
+
+  @Test
+  public void testWithSplitWarLayersForJar() throws IOException, BuildStepException {
+    String artifact = "path/to/artifact.jar";
+    runtimeConfig.setServer(null);
+    when(jdkServerLookup.lookupJdkImage(eq(runtimeConfig.getJdk()))).thenReturn(TEST_JDK_RUNTIME);
+    BuildContext ctx = initBuildContext();
+    ctx.getRuntimeConfig().setArtifact(artifact);
+    ctx.getRuntimeConfig().setSplitWarLayers(true);
+    buildStep.run(ctx);
+
+    assertEquals("FROM " + TEST_JDK_RUNTIME + "\nCOPY ./" + artifact + " $APP_DESTINATION\n",
+        ctx.getDockerfile().toString());
+  }
+
+  @Test
+  public void testWithExplodedWar() throws IOException, BuildStepException {
+    String artifact = "path/to/artifact.war";
+    BuildContext ctx = initBuildContext();
+    ctx.getRuntimeConfig().setArtifact(artifact);
+    ctx.getRuntimeConfig().setExplodeWar(true);
+    buildStep.run(ctx);
+
+    assertEquals("FROM " + TEST_JDK_RUNTIME + " as war\n"
+        + "COPY ./" + artifact + " /app.war\n"
+        + "RUN mkdir /war && cd /war && jar xf /app.war && rm /app.war\n"
+        + "\n"
+        + "FROM " + TEST_SERVER_RUNTIME + "\n"
+        + "COPY --from=war /war $APP_DESTINATION_EXPLODED_WAR\n",
+        ctx.getDockerfile().toString());
+  }
+
 }
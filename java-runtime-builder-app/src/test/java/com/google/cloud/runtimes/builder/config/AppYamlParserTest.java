@@ -31,7 +31,9 @@ import com.google.cloud.runtimes.builder.config.domain.BetaSettings;
 import com.google.cloud.runtimes.builder.config.domain.RuntimeConfig;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -210,6 +212,20 @@ public class AppYamlParserTest {
     assertEquals(otherBuildScript, result.getRuntimeConfig().getBuildScript());
   }
 
+  @Test
+  public void testParseGradleTaskWithCmdSetting() throws IOException {
+    Map<String, Object> overrideSettings = new HashMap<>();
+    overrideSettings.put("gradle_task", "war");
+    appYamlParser = new AppYamlParser();
+
+    AppYaml result = parseFileWithContents(APP_YAML_PREAMBLE
+        + "runtime_config:\n"
+        + "  gradle_task: bootJar");
+    assertEquals("bootJar", result.getRuntimeConfig().getGradleTask());
+    result.applyOverrideSettings(overrideSettings);
+    assertEquals("war", result.getRuntimeConfig().getGradleTask());
+  }
+
   @Test
   public void testParseArtifactWithoutYaml() throws IOException {
     String otherArtifact = "my/path/to/other_artifact";
@@ -277,6 +293,82 @@ public class AppYamlParserTest {
     assertEquals(true, result.get(jettyQuickstartKey));
   }
 
+  @Test
+  public void testGetAppYamlOverrideSettingsNullableBoolean() {
+    CommandLine cmd = mock(CommandLine.class);
+    when(cmd.hasOption("gradle_parallel")).thenReturn(true);
+    when(cmd.hasOption("gradle_build_cache")).thenReturn(true);
+    when(cmd.getOptionValue("gradle_build_cache")).thenReturn("false");
+    when(cmd.hasOption("gradle_configuration_cache")).thenReturn(true);
+    when(cmd.getOptionValue("gradle_configuration_cache")).thenReturn("True");
+
+    Map<String, Object> result = Application.getAppYamlOverrideSettings(cmd);
+    assertEquals(3, result.size());
+    assertEquals(true, result.get("gradle_parallel"));
+    assertEquals(false, result.get("gradle_build_cache"));
+    assertEquals(true, result.get("gradle_configuration_cache"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetAppYamlOverrideSettingsInvalidBoolean() {
+    CommandLine cmd = mock(CommandLine.class);
+    when(cmd.hasOption("gradle_parallel")).thenReturn(true);
+    when(cmd.getOptionValue("gradle_parallel")).thenReturn("no");
+
+    Application.getAppYamlOverrideSettings(cmd);
+  }
+
+  @Test
+  public void testParseNullableBooleanOverrideSetting() throws ParseException {
+    Options options = new Options();
+    Application.addOverrideSettingsToOptions(options);
+
+    CommandLine cmd = new DefaultParser().parse(options,
+        new String[] {"--gradle_parallel=false", "--gradle_build_cache"});
+    Map<String, Object> result = Application.getAppYamlOverrideSettings(cmd);
+    assertEquals(false, result.get("gradle_parallel"));
+    assertEquals(true, result.get("gradle_build_cache"));
+    assertFalse(result.containsKey("gradle_configuration_cache"));
+  }
+
+  @Test
+  public void testParsePruneBuildContextDisabled() throws ParseException {
+    Options options = new Options();
+    Application.addOverrideSettingsToOptions(options);
+
+    CommandLine cmd = new DefaultParser().parse(options,
+        new String[] {"--prune_build_context=false"});
+    Map<String, Object> result = Application.getAppYamlOverrideSettings(cmd);
+    assertEquals(false, result.get("prune_build_context"));
+  }
+
+  @Test
+  public void testParseResourcesAndScaling() throws IOException {
+    AppYaml result = parseFileWithContents(APP_YAML_PREAMBLE
+        + "resources:\n"
+        + "  cpu: 2\n"
+        + "  memory_gb: 2.3\n"
+        + "  disk_size_gb: 10\n"
+        + "manual_scaling:\n"
+        + "  instances: 3");
+    assertEquals(2, result.getResources().getCpu(), 0);
+    assertEquals(2.3, result.getResources().getMemoryGb(), 0);
+    assertEquals(3, result.getManualScaling().getInstances());
+  }
+
+  @Test
+  public void testParseResourcesDefaults() throws IOException {
+    AppYaml result = parseFileWithContents(APP_YAML_PREAMBLE
+        + "resources:\n"
+        + "  cpu: 4\n"
+        + "automatic_scaling:\n"
+        + "  max_num_instances: 5");
+    assertEquals(4, result.getResources().getCpu(), 0);
+    assertEquals(0.6, result.getResources().getMemoryGb(), 0);
+    assertNull(result.getManualScaling());
+    assertNull(parseFileWithContents(APP_YAML_PREAMBLE).getResources());
+  }
+
   @Test
   public void testAddOverrideSettingsToOptions() {
     Options options = new Options();
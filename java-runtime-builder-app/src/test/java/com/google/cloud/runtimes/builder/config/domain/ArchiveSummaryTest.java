@@ -0,0 +1,179 @@
+package com.google.cloud.runtimes.builder.config.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+public class ArchiveSummaryTest {
+
+  // the header of a class file compiled for Java 11
+  private static final byte[] JAVA_11_CLASS = {
+      (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, 55, 0, 0};
+  private static final byte[] JAVA_8_CLASS = {
+      (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, 52, 0, 0};
+
+  @Test
+  public void testDeflatedEntries() throws IOException {
+    Path jar = write(zip(ImmutableMap.of(
+        "META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\nMain-Class: com.example.Main\n\n"),
+        "com/example/Main.class", JAVA_11_CLASS,
+        "com/example/Other.class", JAVA_8_CLASS), false));
+
+    ArchiveSummary summary = ArchiveSummary.read(jar);
+    assertEquals(ImmutableSet.of("META-INF/MANIFEST.MF", "com/example/Main.class",
+        "com/example/Other.class"), summary.getEntryNames());
+    assertEquals(Optional.of("com.example.Main"), summary.getMainClass());
+    assertEquals(Optional.of(55), summary.getClassFileVersion());
+    assertEquals(Optional.of(11), summary.getRequiredJavaVersion());
+    assertTrue(summary.getBootLayers().isEmpty());
+  }
+
+  @Test
+  public void testStoredEntries() throws IOException {
+    Path jar = write(zip(ImmutableMap.of(
+        "META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\nMain-Class: com.example.Main\n\n"),
+        "com/example/Main.class", JAVA_8_CLASS), true));
+
+    ArchiveSummary summary = ArchiveSummary.read(jar);
+    assertEquals(Optional.of("com.example.Main"), summary.getMainClass());
+    assertEquals(Optional.of(52), summary.getClassFileVersion());
+  }
+
+  @Test
+  public void testSpringBootJar() throws IOException {
+    Path jar = write(zip(ImmutableMap.of(
+        "META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n"
+            + "Main-Class: org.springframework.boot.loader.JarLauncher\n"
+            + "Start-Class: com.example.Application\n\n"),
+        "org/springframework/boot/loader/JarLauncher.class", JAVA_8_CLASS,
+        "BOOT-INF/classes/com/example/Application.class", JAVA_11_CLASS,
+        "BOOT-INF/layers.idx", bytes("- \"dependencies\":\n  - \"BOOT-INF/lib/\"\n"
+            + "- \"application\":\n  - \"BOOT-INF/classes/\"\n")), false));
+
+    ArchiveSummary summary = ArchiveSummary.read(jar);
+    assertEquals(ImmutableList.of("dependencies", "application"), summary.getBootLayers());
+    assertEquals(Optional.of(55), summary.getClassFileVersion());
+  }
+
+  @Test
+  public void testPrependedLaunchScript() throws IOException {
+    byte[] script = bytes("#!/bin/bash\nexec java -jar \"$0\" \"$@\"\n");
+    byte[] zip = zip(ImmutableMap.of(
+        "META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\nMain-Class: com.example.Main\n\n"),
+        "com/example/Main.class", JAVA_8_CLASS), false);
+    ByteArrayOutputStream executable = new ByteArrayOutputStream();
+    executable.write(script);
+    executable.write(zip);
+
+    ArchiveSummary summary = ArchiveSummary.read(write(executable.toByteArray()));
+    assertEquals(Optional.of("com.example.Main"), summary.getMainClass());
+    assertEquals(Optional.of(52), summary.getClassFileVersion());
+  }
+
+  @Test
+  public void testEmptyArchive() throws IOException {
+    byte[] emptyArchive = new byte[22];
+    emptyArchive[0] = 0x50;
+    emptyArchive[1] = 0x4b;
+    emptyArchive[2] = 0x05;
+    emptyArchive[3] = 0x06;
+
+    ArchiveSummary summary = ArchiveSummary.read(write(emptyArchive));
+    assertTrue(summary.getEntryNames().isEmpty());
+    assertEquals(Optional.empty(), summary.getManifest());
+    assertEquals(Optional.empty(), summary.getClassFileVersion());
+  }
+
+  @Test
+  public void testDuplicateEntries() throws IOException {
+    byte[] zip = zip(ImmutableMap.of(
+        "META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\nMain-Class: com.example.Main\n\n"),
+        "META-INF/LICENSE", bytes("first"),
+        "META-INF/LICENSX", bytes("second"),
+        "com/example/Main.class", JAVA_8_CLASS), false);
+    // rename the second license in its local and central headers, as zip tools won't write it
+    String contents = new String(zip, StandardCharsets.ISO_8859_1);
+    zip = contents.replace("META-INF/LICENSX", "META-INF/LICENSE")
+        .getBytes(StandardCharsets.ISO_8859_1);
+
+    ArchiveSummary summary = ArchiveSummary.read(write(zip));
+    assertEquals(ImmutableSet.of("META-INF/MANIFEST.MF", "META-INF/LICENSE",
+        "com/example/Main.class"), summary.getEntryNames());
+    assertEquals(Optional.of("com.example.Main"), summary.getMainClass());
+    assertEquals(Optional.of(52), summary.getClassFileVersion());
+  }
+
+  @Test(expected = ZipException.class)
+  public void testNotAnArchive() throws IOException {
+    ArchiveSummary.read(write(bytes("this is not a zip archive, just some text")));
+  }
+
+  @Test(expected = ZipException.class)
+  public void testTruncatedArchive() throws IOException {
+    byte[] zip = zip(ImmutableMap.of(
+        "META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\nMain-Class: com.example.Main\n\n"),
+        "com/example/Main.class", JAVA_8_CLASS), false);
+    ArchiveSummary.read(write(Arrays.copyOf(zip, zip.length / 2)));
+  }
+
+  @Test(expected = ZipException.class)
+  public void testCorruptCentralDirectory() throws IOException {
+    byte[] zip = zip(ImmutableMap.of("com/example/Main.class", JAVA_8_CLASS), false);
+    // overwrite the signature of the central directory header that follows the local entry
+    for (int i = 4; i < zip.length - 4; i++) {
+      if (zip[i] == 0x50 && zip[i + 1] == 0x4b && zip[i + 2] == 0x01 && zip[i + 3] == 0x02) {
+        zip[i + 2] = 0x07;
+        break;
+      }
+    }
+    ArchiveSummary.read(write(zip));
+  }
+
+  private static byte[] bytes(String contents) {
+    return contents.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] zip(Map<String, byte[]> entries, boolean stored) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        ZipEntry zipEntry = new ZipEntry(entry.getKey());
+        if (stored) {
+          CRC32 crc = new CRC32();
+          crc.update(entry.getValue());
+          zipEntry.setMethod(ZipEntry.STORED);
+          zipEntry.setSize(entry.getValue().length);
+          zipEntry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(zipEntry);
+        out.write(entry.getValue());
+        out.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Path write(byte[] contents) throws IOException {
+    Path file = Files.createTempFile("archive", ".jar");
+    file.toFile().deleteOnExit();
+    return Files.write(file, contents);
+  }
+}
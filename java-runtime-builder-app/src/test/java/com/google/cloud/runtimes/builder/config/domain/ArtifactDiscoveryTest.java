@@ -0,0 +1,133 @@
+package com.google.cloud.runtimes.builder.config.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import com.google.cloud.runtimes.builder.buildcontext.DockerignoreMatcher;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class ArtifactDiscoveryTest {
+
+  @Test
+  public void testMavenOutputDir() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("target/app-1.0.jar").build()
+        .file("target/app-1.0-sources.jar").build()
+        .file("target/app-1.0-javadoc.jar").build()
+        .file("target/original-app-1.0.jar").build()
+        .file("target/lib/dependency.jar").build()
+        .file("target/classes/com/example/Main.class").build()
+        .build();
+
+    assertEquals(ImmutableList.of(workspace.resolve("target/app-1.0.jar")),
+        ArtifactDiscovery.discover(WorkspaceIndex.build(workspace)));
+  }
+
+  @Test
+  public void testGradleOutputDir() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("build.gradle").build()
+        .file("build/libs/app.jar").build()
+        .file("build/libs/app-plain.jar").build()
+        .file("build/tmp/jar/other.jar").build()
+        .build();
+
+    assertEquals(ImmutableList.of(workspace.resolve("build/libs/app.jar")),
+        ArtifactDiscovery.discover(WorkspaceIndex.build(workspace)));
+  }
+
+  @Test
+  public void testWarOutputDir() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app.war").build()
+        .file("target/app/WEB-INF/lib/library.jar").build()
+        .build();
+
+    assertEquals(ImmutableList.of(workspace.resolve("target/app.war")),
+        ArtifactDiscovery.discover(WorkspaceIndex.build(workspace)));
+  }
+
+  @Test
+  public void testRanking() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("web/pom.xml").build()
+        .file("web/target/web.war").build()
+        .file("core/pom.xml").build()
+        .file("core/target/core.jar").build()
+        .file("target/b.jar").build()
+        .file("target/a.jar").build()
+        .build();
+
+    assertEquals(ImmutableList.of(
+        workspace.resolve("target/a.jar"),
+        workspace.resolve("target/b.jar"),
+        workspace.resolve("core/target/core.jar"),
+        workspace.resolve("web/target/web.war")),
+        ArtifactDiscovery.discover(WorkspaceIndex.build(workspace)));
+  }
+
+  @Test
+  public void testTopRanked() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("web/pom.xml").build()
+        .file("web/target/web.war").build()
+        .file("core/pom.xml").build()
+        .file("core/target/core.jar").build()
+        .file("core/target/nested/other.jar").build()
+        .build();
+
+    assertEquals(ImmutableList.of(
+        workspace.resolve("core/target/core.jar"),
+        workspace.resolve("web/target/web.war")),
+        ArtifactDiscovery.getTopRanked(workspace,
+            ArtifactDiscovery.discover(WorkspaceIndex.build(workspace))));
+  }
+
+  @Test
+  public void testDockerignoreExclusions() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app.jar").build()
+        .file("target/old/app-1.0.jar").build()
+        .file("build/libs/app.jar").build()
+        .file("web/pom.xml").build()
+        .file("web/target/web.war").build()
+        .build();
+    DockerignoreMatcher dockerignore = new DockerignoreMatcher(
+        ImmutableList.of("target/old", "build", "**/target", "!web/target/web.war"));
+
+    assertEquals(ImmutableList.of(workspace.resolve("web/target/web.war")),
+        ArtifactDiscovery.discover(WorkspaceIndex.build(workspace), dockerignore));
+  }
+
+  @Test
+  public void testDepthAndEntryLimits() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/a/b/c/deep.jar").build()
+        .file("target/a/shallow.jar").build()
+        .build();
+    WorkspaceIndex workspaceIndex = WorkspaceIndex.build(workspace);
+    DockerignoreMatcher dockerignore = new DockerignoreMatcher(ImmutableList.of());
+
+    assertEquals(ImmutableList.of(workspace.resolve("target/a/shallow.jar")),
+        ArtifactDiscovery.discover(workspaceIndex, dockerignore, 3, 100));
+    assertTrue(ArtifactDiscovery.discover(workspaceIndex, dockerignore, 3, 1).isEmpty());
+  }
+
+  @Test
+  public void testNoOutputDirs() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("src/main/java/Main.java").build()
+        .file("lib/library.jar").build()
+        .build();
+
+    assertTrue(ArtifactDiscovery.discover(WorkspaceIndex.build(workspace)).isEmpty());
+  }
+}
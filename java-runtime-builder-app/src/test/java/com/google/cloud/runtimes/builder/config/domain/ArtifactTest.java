@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 
 public class ArtifactTest {
 
@@ -114,4 +115,69 @@ public class ArtifactTest {
     assertEquals(invalidArtifacts.size(), thrown);
   }
 
+  @Test
+  public void testBootLayers() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Main-Class: org.springframework.boot.loader.JarLauncher\n")
+        .withZipEntry("BOOT-INF/layers.idx", "- \"dependencies\":\n  - \"BOOT-INF/lib/\"\n"
+            + "- \"spring-boot-loader\":\n  - \"org/\"\n"
+            + "- \"snapshot-dependencies\":\n"
+            + "- \"application\":\n  - \"BOOT-INF/classes/\"\n")
+        .build()
+        .build();
+
+    Artifact artifact = Artifact.fromPath(workspace.resolve("app.jar"));
+    assertEquals(ImmutableList.of("dependencies", "spring-boot-loader", "snapshot-dependencies",
+        "application"), artifact.getBootLayers());
+    assertEquals(Optional.of("org.springframework.boot.loader.JarLauncher"),
+        artifact.getMainClass());
+  }
+
+  @Test
+  public void testBootLayersWithoutIndex() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar").withZipEntry("com/example/Main.class", "").build()
+        .build();
+
+    Artifact artifact = Artifact.fromPath(workspace.resolve("app.jar"));
+    assertTrue(artifact.getBootLayers().isEmpty());
+    assertEquals(Optional.empty(), artifact.getMainClass());
+    assertTrue(Artifact.fromPath(workspace.resolve("missing.jar")).getBootLayers().isEmpty());
+  }
+
+  @Test
+  public void testClassPathLibraries() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("target/app.jar")
+        .withZipEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"
+            + "Class-Path: lib/a.jar lib/b.jar helper.jar ../outside.jar missing/c.jar\n"
+            + "  file:/opt/d.jar\n")
+        .build()
+        .file("target/lib/a.jar").build()
+        .file("target/lib/b.jar").build()
+        .file("target/helper.jar").build()
+        .file("outside.jar").build()
+        .build();
+
+    Artifact artifact = Artifact.fromPath(workspace.resolve("target/app.jar"));
+    assertEquals(ImmutableList.of(workspace.resolve("target/lib"),
+        workspace.resolve("target/helper.jar")), artifact.getClassPathLibraries());
+  }
+
+  @Test
+  public void testNativeImageConfig() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app.jar")
+        .withZipEntry("com/example/Main.class", "")
+        .withZipEntry("META-INF/native-image/com.example/app/reflect-config.json", "[]")
+        .build()
+        .file("plain.jar").withZipEntry("com/example/Main.class", "").build()
+        .build();
+
+    assertTrue(Artifact.fromPath(workspace.resolve("app.jar")).hasNativeImageConfig());
+    assertFalse(Artifact.fromPath(workspace.resolve("plain.jar")).hasNativeImageConfig());
+    assertFalse(Artifact.fromPath(workspace.resolve("missing.jar")).hasNativeImageConfig());
+  }
 }
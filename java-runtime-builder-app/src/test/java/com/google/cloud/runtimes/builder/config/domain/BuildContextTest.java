@@ -9,6 +9,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -48,6 +51,32 @@ public class BuildContextTest {
     assertFalse(Files.exists(workspace.resolve(".dockerfile")));
   }
 
+  @Test
+  public void testWriteDockerFileNotOptimizedByDefault() throws IOException {
+    BuildContext context = initBuildContext();
+    context.getDockerfile().addStage("runtime_image")
+        .add("RUN", "apt-get update")
+        .add("RUN", "apt-get install -y curl");
+
+    context.writeDockerResources();
+    assertEquals("FROM runtime_image\n"
+        + "RUN apt-get update\n"
+        + "RUN apt-get install -y curl\n", readFile(getDockerfile()));
+  }
+
+  @Test
+  public void testWriteDockerFileOptimized() throws IOException {
+    runtimeConfig.setOptimizeDockerfile(true);
+    BuildContext context = initBuildContext();
+    context.getDockerfile().addStage("runtime_image")
+        .add("RUN", "apt-get update")
+        .add("RUN", "apt-get install -y curl");
+
+    context.writeDockerResources();
+    assertEquals("FROM runtime_image\n"
+        + "RUN ( apt-get update ) && ( apt-get install -y curl )\n", readFile(getDockerfile()));
+  }
+
   @Test
   public void testWriteDockerFilesWithExistingDockerignore() throws IOException {
     String dockerIgnoreContents = "foo/**\nbar";
@@ -87,6 +116,28 @@ public class BuildContextTest {
     assertEquals(expectedDockerIgnore, readFile(getDockerIgnore()));
   }
 
+  @Test
+  public void testWriteDockerFilesWithExistingDockerignoreAndExceptions() throws IOException {
+    String dockerIgnoreContents = "secrets\n";
+    workspace = new TestWorkspaceBuilder()
+        .file(".dockerignore").withContents(dockerIgnoreContents).build()
+        .build();
+
+    BuildContext context = initBuildContext();
+    context.getDockerignore().appendLine("secrets");
+    context.getDockerignore().appendLine("*");
+    context.getDockerignore().appendLine("!app.war");
+    context.getDockerignore().appendLine("secrets");
+
+    context.writeDockerResources();
+
+    // the repeated line follows an exception, so it's needed to exclude files again
+    String expectedDockerIgnore = dockerIgnoreContents + "\n"
+        + DOCKER_IGNORE_PREAMBLE
+        + "*\n!app.war\nsecrets\n";
+    assertEquals(expectedDockerIgnore, readFile(getDockerIgnore()));
+  }
+
   private boolean testWriteDockerFilesWithExistingDockerfileGivesCorrectException(String dockerPath,
       String exceptionMessage)
       throws IOException {
@@ -190,6 +241,34 @@ public class BuildContextTest {
         initBuildContext().getBuildTool().get());
   }
 
+  @Test
+  public void testGetBuildToolWithGradleSettingsOnly() throws IOException {
+    workspace = new TestWorkspaceBuilder()
+        .file("settings.gradle").build()
+        .file("web/build.gradle").build()
+        .build();
+
+    assertEquals(BuildTool.GRADLE,
+        initBuildContext().getBuildTool().get());
+  }
+
+  @Test
+  public void testFindBuildFilesInMultiModuleProject() throws IOException {
+    workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("web/pom.xml").build()
+        .file("web/target/classes/META-INF/maven/pom.xml").build()
+        .file("lib/core/pom.xml").build()
+        .file(".git/pom.xml").build()
+        .file("build.gradle").build()
+        .build();
+
+    assertEquals(Arrays.asList(Paths.get("pom.xml"), Paths.get("web/pom.xml"),
+        Paths.get("lib/core/pom.xml")), initBuildContext().findBuildFiles(BuildTool.MAVEN));
+    assertEquals(Collections.singletonList(Paths.get("build.gradle")),
+        initBuildContext().findBuildFiles(BuildTool.GRADLE));
+  }
+
   @Test
   public void testIsForceCompatRuntimeWithBetaSettingsFalse() {
     betaSettings.setEnableAppEngineApis(false);
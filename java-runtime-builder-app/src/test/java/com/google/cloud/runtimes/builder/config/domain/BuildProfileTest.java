@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BuildProfile}.
+ */
+public class BuildProfileTest {
+
+  @Test
+  public void testFromSettingNull() {
+    assertEquals(BuildProfile.DEFAULT, BuildProfile.fromSetting(null));
+  }
+
+  @Test
+  public void testFromSettingIgnoresCase() {
+    assertEquals(BuildProfile.PERFORMANCE, BuildProfile.fromSetting("performance"));
+    assertEquals(BuildProfile.PERFORMANCE, BuildProfile.fromSetting("PERFORMANCE"));
+    assertEquals(BuildProfile.DEFAULT, BuildProfile.fromSetting("default"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromSettingInvalid() {
+    BuildProfile.fromSetting("fastest");
+  }
+
+}
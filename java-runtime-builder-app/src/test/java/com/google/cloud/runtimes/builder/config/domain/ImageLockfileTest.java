@@ -0,0 +1,73 @@
+package com.google.cloud.runtimes.builder.config.domain;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ImageLockfile}.
+ */
+public class ImageLockfileTest {
+
+  private static final String DIGEST = "sha256:" + Strings.repeat("ab", 32);
+
+  @Test
+  public void testLoad() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("images.lock").withContents("# pinned images\n"
+            + "\n"
+            + "gcr.io/google-appengine/openjdk:8 = " + DIGEST + "\n").build()
+        .build();
+
+    ImageLockfile lockfile = ImageLockfile.load(workspace.resolve("images.lock"));
+
+    assertEquals("gcr.io/google-appengine/openjdk:8@" + DIGEST,
+        lockfile.pin("gcr.io/google-appengine/openjdk:8"));
+  }
+
+  @Test
+  public void testPinUnknownImage() {
+    ImageLockfile lockfile = new ImageLockfile(ImmutableMap.of("openjdk:8", DIGEST));
+
+    assertEquals("openjdk:9", lockfile.pin("openjdk:9"));
+  }
+
+  @Test
+  public void testPinImageWithDigest() {
+    ImageLockfile lockfile = new ImageLockfile(ImmutableMap.of("openjdk:8", DIGEST));
+
+    assertEquals("openjdk:8@sha256:1234", lockfile.pin("openjdk:8@sha256:1234"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDigest() {
+    new ImageLockfile(ImmutableMap.of("openjdk:8", "latest"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidEntry() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("images.lock").withContents("openjdk:8\n").build()
+        .build();
+
+    ImageLockfile.load(workspace.resolve("images.lock"));
+  }
+
+  @Test
+  public void testJdkServerLookupPinned() {
+    ImageLockfile lockfile = new ImageLockfile(ImmutableMap.of(
+        "jdk:default", DIGEST, "server:default", DIGEST));
+
+    JdkServerLookup lookup = new JdkServerLookup(new String[]{"*=jdk:default"},
+        new String[]{"*|*=server:default"}, lockfile);
+
+    assertEquals("jdk:default@" + DIGEST, lookup.lookupJdkImage(null));
+    assertEquals("server:default@" + DIGEST, lookup.lookupServerImage(null, null));
+  }
+
+}
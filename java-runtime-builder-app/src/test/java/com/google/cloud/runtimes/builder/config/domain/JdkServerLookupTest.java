@@ -4,6 +4,8 @@ import com.google.cloud.runtimes.builder.Application;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Optional;
+
 import static org.junit.Assert.*;
 
 /**
@@ -123,4 +125,42 @@ public class JdkServerLookupTest {
     };
     new JdkServerLookup(jdkMap, serverMap);
   }
+
+  @Test
+  public void testLookupNativeImages() {
+    String[] jdkMap = {
+        "*=defaultjdk",
+        "native=base:minimal",
+        "native-build=graalvm:latest"};
+    JdkServerLookup lookup = new JdkServerLookup(jdkMap, serverMapStrings);
+
+    assertEquals("base:minimal", lookup.lookupNativeImage());
+    assertEquals("graalvm:latest", lookup.lookupNativeBuildImage());
+    assertFalse(lookup.getAvailableJdks().contains("'native'"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLookupNativeImageAsJdk() {
+    Application.mergeSettingsWithDefaults(jdkMapStrings, serverMapStrings)
+        .lookupJdkImage("native");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLookupNativeImageMissing() {
+    jdkServerLookup.lookupNativeImage();
+  }
+
+  @Test
+  public void testGetJavaVersion() {
+    assertEquals(Optional.of(8),
+        JdkServerLookup.getJavaVersion("gcr.io/google-appengine/openjdk:8", null));
+    assertEquals(Optional.of(8), JdkServerLookup.getJavaVersion("openjdk:1.8", null));
+    assertEquals(Optional.of(11), JdkServerLookup.getJavaVersion("openjdk:11.0.2-jre", null));
+    assertEquals(Optional.of(21),
+        JdkServerLookup.getJavaVersion("localhost:5000/temurin:21@sha256:abc", null));
+    assertEquals(Optional.of(17),
+        JdkServerLookup.getJavaVersion("localhost:5000/jdk", "openjdk17"));
+    assertEquals(Optional.of(17), JdkServerLookup.getJavaVersion("jdk:latest", "openjdk17"));
+    assertEquals(Optional.empty(), JdkServerLookup.getJavaVersion("jdk:latest", null));
+  }
 }
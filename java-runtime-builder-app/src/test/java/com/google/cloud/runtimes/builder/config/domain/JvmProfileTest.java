@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.runtimes.builder.config.domain;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link JvmProfile}.
+ */
+public class JvmProfileTest {
+
+  @Test
+  public void testFromSettingIgnoresCase() {
+    assertEquals(JvmProfile.LATENCY, JvmProfile.fromSetting("latency"));
+    assertEquals(JvmProfile.THROUGHPUT, JvmProfile.fromSetting("Throughput"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromSettingInvalid() {
+    JvmProfile.fromSetting("fastest");
+  }
+
+}
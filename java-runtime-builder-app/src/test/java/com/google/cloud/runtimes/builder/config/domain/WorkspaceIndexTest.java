@@ -0,0 +1,110 @@
+package com.google.cloud.runtimes.builder.config.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.runtimes.builder.TestUtils.TestWorkspaceBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link WorkspaceIndex}.
+ */
+public class WorkspaceIndexTest {
+
+  @Test
+  public void testQueries() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("app.jar").build()
+        .file(".mvn/wrapper/maven-wrapper.properties").build()
+        .file("web/WEB-INF/web.xml").build()
+        .build();
+
+    WorkspaceIndex index = WorkspaceIndex.build(workspace);
+
+    assertTrue(index.isFile("pom.xml"));
+    assertTrue(index.isFile(workspace.resolve("app.jar")));
+    assertTrue(index.isDirectory(Paths.get("web/WEB-INF")));
+    assertFalse(index.isFile("web/WEB-INF"));
+    assertTrue(index.exists(".mvn"));
+    assertFalse(index.exists("mvnw"));
+    assertEquals(Arrays.asList(workspace.resolve("app.jar"), workspace.resolve("pom.xml")),
+        index.getRootFiles());
+    assertEquals(Optional.of(BuildTool.MAVEN), index.getBuildTool());
+  }
+
+  @Test
+  public void testSkippedDirectoriesQueriedFromFileSystem() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("target/classes/pom.xml").build()
+        .file(".git/HEAD").build()
+        .build();
+
+    WorkspaceIndex index = WorkspaceIndex.build(workspace);
+
+    assertTrue(index.isFile(".git/HEAD"));
+    assertTrue(index.exists("target/classes/pom.xml"));
+    // files created after the index is built are only found outside of the indexed directories
+    Files.createFile(workspace.resolve("target/app.jar"));
+    Files.createFile(workspace.resolve("Dockerfile"));
+    assertTrue(index.exists("target/app.jar"));
+    assertFalse(index.exists("Dockerfile"));
+  }
+
+  @Test
+  public void testDirectoriesListedWhenQueried() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("build.gradle").build()
+        .file("src/main/java/Main.java").build()
+        .build();
+
+    WorkspaceIndex index = WorkspaceIndex.build(workspace);
+
+    assertEquals(Optional.of(BuildTool.GRADLE), index.getBuildTool());
+    // finding the build tool only lists the root, so later files in other directories are found
+    Files.createFile(workspace.resolve("src/main/java/Other.java"));
+    Files.createFile(workspace.resolve("pom.xml"));
+    assertTrue(index.isFile("src/main/java/Other.java"));
+    assertFalse(index.exists("pom.xml"));
+  }
+
+  @Test
+  public void testFindBuildFiles() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("pom.xml").build()
+        .file("module/pom.xml").build()
+        .file("module/target/classes/META-INF/maven/pom.xml").build()
+        .file("node_modules/dep/pom.xml").build()
+        .file("settings.gradle").build()
+        .file("lib/build.gradle").build()
+        .build();
+
+    WorkspaceIndex index = WorkspaceIndex.build(workspace);
+
+    assertEquals(Arrays.asList(Paths.get("pom.xml"), Paths.get("module/pom.xml")),
+        index.findBuildFiles(BuildTool.MAVEN));
+    assertEquals(Arrays.asList(Paths.get("lib/build.gradle")),
+        index.findBuildFiles(BuildTool.GRADLE));
+  }
+
+  @Test
+  public void testPathsOutsideWorkspace() throws IOException {
+    Path workspace = new TestWorkspaceBuilder()
+        .file("app/pom.xml").build()
+        .build();
+
+    WorkspaceIndex index = WorkspaceIndex.build(workspace.resolve("app"));
+
+    assertFalse(index.exists("../missing"));
+    assertTrue(index.isDirectory(Paths.get("..")));
+  }
+
+}
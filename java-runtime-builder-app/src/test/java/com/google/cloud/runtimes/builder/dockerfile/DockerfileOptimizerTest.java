@@ -0,0 +1,156 @@
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DockerfileOptimizer} and its passes.
+ */
+public class DockerfileOptimizerTest {
+
+  private String optimize(Dockerfile dockerfile) {
+    new DockerfileOptimizer().optimize(dockerfile);
+    return dockerfile.toString();
+  }
+
+  @Test
+  public void testUnchangedDockerfileNotRewritten() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("native_build_image", "native")
+        .add("RUN", "native-image --no-fallback -jar app.jar -o app");
+    dockerfile.addStage("native_image")
+        .add(Instruction.copyFrom("native", "/native/app", "/app/app"));
+    String expected = dockerfile.toString();
+
+    assertEquals(expected, optimize(dockerfile));
+  }
+
+  @Test
+  public void testMergeRuns() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("runtime_image")
+        .add("RUN", "mkdir /app")
+        .add("RUN", "timeout 30 java -jar app.jar || true")
+        .add("RUN", "chmod +x run.sh && ./run.sh");
+
+    assertEquals("FROM runtime_image\n"
+        + "RUN ( mkdir /app ) && ( timeout 30 java -jar app.jar || true )"
+        + " && ( chmod +x run.sh && ./run.sh )\n", optimize(dockerfile));
+  }
+
+  @Test
+  public void testMergedRunsDontShareShellState() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("runtime_image")
+        .add("RUN", "cd sub")
+        .add("RUN", "make")
+        .add("RUN", "export A=1")
+        .add("RUN", "echo $A");
+
+    // each command starts in the working directory and environment of the image, as before
+    assertEquals("FROM runtime_image\n"
+        + "RUN ( cd sub ) && ( make ) && ( export A=1 ) && ( echo $A )\n",
+        optimize(dockerfile));
+  }
+
+  @Test
+  public void testRunsWithDifferentFlagsOrExecFormNotMerged() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("runtime_image")
+        .add(Instruction.run(ImmutableList.of("--mount=type=cache,target=/root/.m2"),
+            "mvn package"))
+        .add("RUN", "mvn verify")
+        .add("RUN", "[\"echo\", \"done\"]");
+    String expected = dockerfile.toString();
+
+    assertEquals(expected, optimize(dockerfile));
+  }
+
+  @Test
+  public void testDependencyRunsNotMergedWithOthers() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("maven", "builder")
+        .add(Instruction.copy("pom.xml", "pom.xml").asDependencies())
+        .add(Instruction.run(ImmutableList.of(), "mvn dependency:go-offline").asDependencies())
+        .add("RUN", "mvn package");
+    String expected = dockerfile.toString();
+
+    assertEquals(expected, optimize(dockerfile));
+  }
+
+  @Test
+  public void testCopiesOrderedByVolatility() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("runtime_image")
+        .add(Instruction.copy("./app.jar", "/app/app.jar"))
+        .add(Instruction.copy("./target/lib", "/app/lib").asDependencies())
+        .add(Instruction.copy("./config", "/app/config"));
+
+    assertEquals("FROM runtime_image\n"
+        + "COPY ./target/lib /app/lib\n"
+        + "COPY ./app.jar /app/app.jar\n"
+        + "COPY ./config /app/config\n", optimize(dockerfile));
+  }
+
+  @Test
+  public void testCopiesWithOverlappingDestinationsNotReordered() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("runtime_image")
+        .add(Instruction.copy("./application/", "/app/"))
+        .add(Instruction.copy("./dependencies/", "/app/").asDependencies())
+        .add(Instruction.copy("./target/app.jar", "$APP_DESTINATION"))
+        .add(Instruction.copy("./war-lib", "/app/lib").asDependencies());
+    String expected = dockerfile.toString();
+
+    assertEquals(expected, optimize(dockerfile));
+  }
+
+  @Test
+  public void testRedundantInstructionsDropped() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("runtime_image")
+        .add("WORKDIR", "/app")
+        .add(Instruction.copy("./app.jar", "/app/app.jar"))
+        .add(Instruction.copy("./app.jar", "/app/app.jar"))
+        .add("WORKDIR", "/app")
+        .add("ENV", "A=b")
+        .add("ENV", "A=b");
+
+    assertEquals("FROM runtime_image\n"
+        + "WORKDIR /app\n"
+        + "COPY ./app.jar /app/app.jar\n"
+        + "ENV A=b\n", optimize(dockerfile));
+  }
+
+  @Test
+  public void testUnusedStageDropped() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("maven:3", "builder")
+        .add("RUN", "mvn package");
+    dockerfile.addStage("jdk", "unused")
+        .add("RUN", "jlink --output /opt/java");
+    dockerfile.addStage("runtime_image")
+        .add(Instruction.copyFrom("builder", "./target/app.jar", "/app/app.jar"));
+
+    assertEquals("FROM maven:3 as builder\n"
+        + "RUN mvn package\n"
+        + "\n"
+        + "FROM runtime_image\n"
+        + "COPY --from=builder ./target/app.jar /app/app.jar\n", optimize(dockerfile));
+  }
+
+  @Test
+  public void testStagesReferencedByIndexKept() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("maven:3", "builder")
+        .add("RUN", "mvn package");
+    dockerfile.addStage("runtime_image")
+        .add(Instruction.copyFrom("0", "./target/app.jar", "/app/app.jar"));
+    String expected = dockerfile.toString();
+
+    assertEquals(expected, optimize(dockerfile));
+  }
+
+}
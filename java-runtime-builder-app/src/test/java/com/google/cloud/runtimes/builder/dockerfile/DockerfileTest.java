@@ -0,0 +1,87 @@
+package com.google.cloud.runtimes.builder.dockerfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Optional;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Dockerfile}, {@link Stage} and {@link Instruction}.
+ */
+public class DockerfileTest {
+
+  @Test
+  public void testToString() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addDirective("# syntax=docker/dockerfile:1");
+    dockerfile.addStage("maven:3", "builder")
+        .add("ADD", ". .")
+        .add(Instruction.run(ImmutableList.of("--mount=type=cache,target=/root/.m2"),
+            "mvn package"));
+    dockerfile.addStage("openjdk:17")
+        .add(Instruction.copyFrom("builder", "./target/app.jar", "$APP_DESTINATION"))
+        .add("CMD", "[\"java\", \"-jar\", \"/app/app.jar\"]");
+
+    assertEquals("# syntax=docker/dockerfile:1\n"
+        + "FROM maven:3 as builder\n"
+        + "ADD . .\n"
+        + "RUN --mount=type=cache,target=/root/.m2 mvn package\n"
+        + "\n"
+        + "FROM openjdk:17\n"
+        + "COPY --from=builder ./target/app.jar $APP_DESTINATION\n"
+        + "CMD [\"java\", \"-jar\", \"/app/app.jar\"]\n", dockerfile.toString());
+  }
+
+  @Test
+  public void testDirectiveAddedOnce() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addDirective("# syntax=docker/dockerfile:1")
+        .addDirective("# syntax=docker/dockerfile:1");
+    dockerfile.addStage("openjdk:17");
+
+    assertEquals("# syntax=docker/dockerfile:1\nFROM openjdk:17\n", dockerfile.toString());
+  }
+
+  @Test
+  public void testGetStages() {
+    Dockerfile dockerfile = new Dockerfile();
+    dockerfile.addStage("maven:3", "builder");
+    Stage runtimeStage = dockerfile.addStage("openjdk:17");
+
+    assertEquals(2, dockerfile.getStages().size());
+    assertEquals("maven:3", dockerfile.getStages().get(0).getBaseImage());
+    assertEquals(Optional.of("builder"), dockerfile.getStages().get(0).getName());
+    assertEquals(Optional.empty(), runtimeStage.getName());
+    assertEquals(runtimeStage, dockerfile.getLastStage());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testGetLastStageWithoutStages() {
+    new Dockerfile().getLastStage();
+  }
+
+  @Test
+  public void testInstructionFlags() {
+    Instruction copy = Instruction.copyFrom("builder", "./target/app.jar", "/app/app.jar");
+
+    assertEquals("COPY", copy.getKeyword());
+    assertEquals(Optional.of("builder"), copy.getFlag("from"));
+    assertEquals(Optional.empty(), copy.getFlag("chown"));
+    assertEquals("./target/app.jar /app/app.jar", copy.getArguments());
+  }
+
+  @Test
+  public void testInstructionDeclaredAsDependencies() {
+    Instruction copy = Instruction.copy("pom.xml", "pom.xml");
+
+    assertFalse(copy.isDependencies());
+    assertTrue(copy.asDependencies().isDependencies());
+    assertEquals(copy.toString(), copy.asDependencies().toString());
+    assertNotEquals(copy, copy.asDependencies());
+  }
+
+}
@@ -34,6 +34,7 @@ public class RootModuleTest {
   private static final String MVN_IMAGE = "mvn";
   private static final String GRADLE_IMAGE = "gradle";
   private static final String COMPAT_IMAGE = "compat";
+  private static final String BUILDER_IMAGE = "builder";
   private static final boolean DISABLE_BUILD = false;
 
   @Test(expected = IllegalArgumentException.class)
@@ -91,12 +92,18 @@ public class RootModuleTest {
         .getInstance(BuildPipelineConfigurator.class);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCacheMountSharing() {
+    new RootModule(Application.mergeSettingsWithDefaults(null, null), COMPAT_IMAGE, MVN_IMAGE,
+        GRADLE_IMAGE, BUILDER_IMAGE, DISABLE_BUILD, true, "exclusive", Collections.emptyMap());
+  }
+
   @Test
   public void testDefaultSettingsNoCommandLineGiven() throws IOException {
     JdkServerLookup jdkServerLookup
         = new RootModule(Application.mergeSettingsWithDefaults(null, null), COMPAT_IMAGE, MVN_IMAGE,
-        GRADLE_IMAGE,
-        DISABLE_BUILD, Collections.emptyMap())
+        GRADLE_IMAGE, BUILDER_IMAGE,
+        DISABLE_BUILD, false, "shared", Collections.emptyMap())
         .provideJdkServerLookup();
 
     // spot-checking some of the default settings
@@ -118,8 +125,8 @@ public class RootModuleTest {
         "  openjdk8   | tomcat  = gcr.io/google-appengine/tomcat:8-many-spaces"};
     JdkServerLookup jdkServerLookup
         = new RootModule(Application.mergeSettingsWithDefaults(jdkMappings, serverMappings),
-        COMPAT_IMAGE, MVN_IMAGE, GRADLE_IMAGE,
-        DISABLE_BUILD, Collections.emptyMap())
+        COMPAT_IMAGE, MVN_IMAGE, GRADLE_IMAGE, BUILDER_IMAGE,
+        DISABLE_BUILD, false, "shared", Collections.emptyMap())
         .provideJdkServerLookup();
 
     // spot-checking some of the default settings
@@ -0,0 +1,48 @@
+#!/bin/bash
+
+# Copyright 2017 Google Inc. All rights reserved.
+
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+
+#     http://www.apache.org/licenses/LICENSE-2.0
+
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Resolves the current digest of each image in an image lockfile, for use with the builder's
+# --image-lockfile option. Images given as arguments are added to the lockfile. If the lockfile
+# doesn't exist yet, it's created for the images that java.yaml maps to.
+
+set -e
+
+dir=$(dirname $0)
+projectRoot=$dir/..
+
+LOCKFILE=$1
+shift || true
+
+if [ -z "${LOCKFILE}" ]; then
+  echo "Usage: ${0} <lockfile> [image...]"
+  exit 1
+fi
+
+images=("$@")
+if [ -f "${LOCKFILE}" ]; then
+  images+=($(grep -v '^\s*#' "${LOCKFILE}" | cut -s -d '=' -f 1))
+else
+  images+=($(grep -oE "=[^'=]+'$" $projectRoot/java.yaml | tr -d "='"))
+fi
+
+tmp=$(mktemp)
+echo "# Generated by scripts/refresh-image-lockfile.sh on $(date -u +%Y-%m-%d)" > $tmp
+for image in $(printf '%s\n' "${images[@]}" | sed 's/\s//g' | sort -u); do
+  digest=$(docker buildx imagetools inspect "${image}" --format '{{.Manifest.Digest}}')
+  echo "${image}: ${digest}"
+  echo "${image}=${digest}" >> $tmp
+done
+mv $tmp "${LOCKFILE}"